@@ -0,0 +1,31 @@
+package org.app;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar: runs JMH with the given command-line options and always
+ * attaches the GC profiler, so every result includes the allocation rate ({@code gc.alloc.rate.norm}).
+ * <p>
+ * Example: {@code java -jar Stegonagraphy-1.0-SNAPSHOT-benchmarks.jar LsbCodecBenchmark -p imageSize=16MB}
+ * </p>
+ */
+public class BenchmarkLauncher {
+
+    /**
+     * Runs the selected benchmarks.
+     *
+     * @param args standard JMH command-line options.
+     * @throws Exception if the options are invalid or the run fails.
+     */
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,116 @@
+package org.app;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the visual attack, image statistics and steganalysis over synthetic images, serial and parallel.
+ * <p>
+ * The {@code imageMB} rate reports megabytes of ARGB pixels (4 bytes per pixel) scanned per second.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class ImageAnalysisBenchmark {
+
+    private static final double MEGABYTE = 1024 * 1024;
+
+    /** Approximate size of the image in ARGB bytes. */
+    @Param({"64KB", "1MB", "16MB", "512MB"})
+    public String imageSize;
+
+    /** {@code serial} runs on the calling thread, {@code parallel} always uses the fork/join pool. */
+    @Param({"serial", "parallel"})
+    public String execution;
+
+    private Image image;
+    private int threshold;
+    private double imageMegabytes;
+
+    /**
+     * Rates reported next to the primary throughput score.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Rates {
+
+        /** Image megabytes scanned; reported per second. */
+        public double imageMB;
+
+        /** Clears the counter before each iteration. */
+        @Setup(Level.Iteration)
+        public void reset() {
+            imageMB = 0;
+        }
+    }
+
+    /**
+     * Generates the image.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        int[] pixels = SyntheticBmp.argbPixels(SyntheticBmp.parseSize(imageSize), 42);
+        int side = (int) Math.sqrt(pixels.length);
+        WritableImage writable = new WritableImage(side, side);
+        writable.getPixelWriter().setPixels(0, 0, side, side, PixelFormat.getIntArgbInstance(), pixels, 0, side);
+        image = writable;
+        threshold = execution.equals("parallel") ? 0 : Integer.MAX_VALUE;
+        imageMegabytes = pixels.length * 4 / MEGABYTE;
+    }
+
+    /**
+     * Extracts the LSB planes of the image.
+     *
+     * @param rates the auxiliary rate counters.
+     * @return the attacked image, consumed by JMH.
+     */
+    @Benchmark
+    public Image visualAttack(Rates rates) {
+        rates.imageMB += imageMegabytes;
+        return ImageCryptoTools.performVisualAttack(image, threshold);
+    }
+
+    /**
+     * Computes the image statistics.
+     *
+     * @param rates the auxiliary rate counters.
+     * @return the statistics text, consumed by JMH.
+     */
+    @Benchmark
+    public String statistics(Rates rates) {
+        rates.imageMB += imageMegabytes;
+        return ImageStatistics.getImageStatistics(image, EmbeddingMode.DEFAULT, threshold);
+    }
+
+    /**
+     * Runs the chi-square, RS and sample pair detectors.
+     *
+     * @param rates the auxiliary rate counters.
+     * @return the detector results, consumed by JMH.
+     */
+    @Benchmark
+    public Steganalysis steganalysis(Rates rates) {
+        rates.imageMB += imageMegabytes;
+        return Steganalysis.analyze(image, threshold);
+    }
+}
@@ -0,0 +1,137 @@
+package org.app;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of in-memory embedding and extraction over synthetic BMP images.
+ * <p>
+ * Besides operations per second, every benchmark reports {@code payloadMB} and {@code carrierMB}
+ * rates: megabytes of payload written or read per second, and megabytes of carrier bytes touched per
+ * second. A payload size of {@code max} fills the image to its capacity; fixed payload sizes larger
+ * than the capacity are clamped to it.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class LsbCodecBenchmark {
+
+    private static final double MEGABYTE = 1024 * 1024;
+
+    /** Approximate size of the synthetic BMP file. */
+    @Param({"64KB", "1MB", "16MB", "512MB"})
+    public String imageSize;
+
+    /** Size of the embedded payload, or {@code max} for the image's capacity. */
+    @Param({"1KB", "64KB", "max"})
+    public String payloadSize;
+
+    /** Bit depth of the synthetic BMP. */
+    @Param({"8", "24", "32"})
+    public int bitCount;
+
+    /** Least significant bits used per carrier byte. */
+    @Param({"1", "2"})
+    public int bitsPerChannel;
+
+    /** Whether the payload is scattered over the image instead of written from the first row. */
+    @Param({"false", "true"})
+    public boolean scattered;
+
+    private byte[] image;
+    private byte[] embedded;
+    private byte[] payload;
+    private EmbeddingMode mode;
+    private double carrierMegabytes;
+
+    /**
+     * Rates reported next to the primary throughput score.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Rates {
+
+        /** Payload megabytes processed; reported per second. */
+        public double payloadMB;
+
+        /** Carrier megabytes touched; reported per second. */
+        public double carrierMB;
+
+        /** Clears the counters before each iteration. */
+        @Setup(Level.Iteration)
+        public void reset() {
+            payloadMB = 0;
+            carrierMB = 0;
+        }
+    }
+
+    /**
+     * Generates the carrier and payload, and prepares an image that already holds the payload.
+     *
+     * @throws IOException if the payload cannot be embedded.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        image = SyntheticBmp.create(bitCount, SyntheticBmp.parseSize(imageSize), 42);
+        mode = new EmbeddingMode(bitsPerChannel, EmbeddingMode.ALL_CHANNELS, scattered);
+
+        int capacity = ImageCryptoTools.getCapacity(BmpHeader.parse(image), mode);
+        int length = payloadSize.equalsIgnoreCase("max")
+                ? capacity
+                : (int) Math.min(capacity, SyntheticBmp.parseSize(payloadSize));
+        payload = new byte[length];
+        new Random(7).nextBytes(payload);
+
+        embedded = image.clone();
+        ImageCryptoTools.embedBytesInImageBytes(embedded, payload, mode);
+        long carrierBytes = PayloadFrame.HEADER_SIZE * 8L + (long) length * 8 / bitsPerChannel;
+        carrierMegabytes = carrierBytes / MEGABYTE;
+    }
+
+    /**
+     * Embeds the payload into the carrier, overwriting the previous iteration's payload.
+     *
+     * @param rates the auxiliary rate counters.
+     * @throws IOException if embedding fails.
+     */
+    @Benchmark
+    public void embed(Rates rates) throws IOException {
+        ImageCryptoTools.embedBytesInImageBytes(image, payload, mode);
+        rates.payloadMB += payload.length / MEGABYTE;
+        rates.carrierMB += carrierMegabytes;
+    }
+
+    /**
+     * Extracts and verifies the payload.
+     *
+     * @param rates the auxiliary rate counters.
+     * @return the extracted payload, consumed by JMH.
+     * @throws IOException if extraction fails.
+     */
+    @Benchmark
+    public byte[] extract(Rates rates) throws IOException {
+        byte[] extracted = ImageCryptoTools.extractPayload(embedded);
+        rates.payloadMB += payload.length / MEGABYTE;
+        rates.carrierMB += carrierMegabytes;
+        return extracted;
+    }
+}
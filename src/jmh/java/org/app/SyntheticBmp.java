@@ -0,0 +1,119 @@
+package org.app;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates uncompressed BMP files with random pixel data in memory, so benchmarks do not depend
+ * on image files of every size being checked in.
+ */
+public class SyntheticBmp {
+
+    private static final int DIB_HEADER_SIZE = 40;
+
+    /**
+     * Parses a size such as {@code "64KB"}, {@code "16MB"} or {@code "1048576"}.
+     *
+     * @param size the size, optionally suffixed with KB, MB or GB (powers of 1024).
+     * @return the size in bytes.
+     * @throws IllegalArgumentException if the size is malformed.
+     */
+    public static long parseSize(String size) {
+        String normalized = size.trim().toUpperCase(Locale.ROOT);
+        long unit = 1;
+        if (normalized.endsWith("KB")) {
+            unit = 1024;
+        } else if (normalized.endsWith("MB")) {
+            unit = 1024 * 1024;
+        } else if (normalized.endsWith("GB")) {
+            unit = 1024 * 1024 * 1024;
+        }
+        if (unit != 1) {
+            normalized = normalized.substring(0, normalized.length() - 2);
+        }
+        try {
+            return Long.parseLong(normalized) * unit;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid size: " + size, e);
+        }
+    }
+
+    /**
+     * Creates a square bottom-up BMP whose file size is close to (not above) the requested size.
+     *
+     * @param bitCount  the bit depth: 8 (with a greyscale palette), 24 or 32.
+     * @param fileBytes the approximate file size in bytes.
+     * @param seed      the seed for the random pixel data.
+     * @return the complete BMP file.
+     * @throws IllegalArgumentException if the bit depth is not supported or the size is too small or too large.
+     */
+    public static byte[] create(int bitCount, long fileBytes, long seed) {
+        if (bitCount != 8 && bitCount != 24 && bitCount != 32) {
+            throw new IllegalArgumentException("Unsupported bit depth: " + bitCount);
+        }
+        int paletteSize = bitCount == 8 ? 256 * 4 : 0;
+        int pixelOffset = BmpHeader.FILE_HEADER_SIZE + DIB_HEADER_SIZE + paletteSize;
+
+        // Pick the side length so that rows including their padding fit the requested size
+        int side = (int) Math.sqrt((double) (fileBytes - pixelOffset) * 8 / bitCount);
+        while (side > 1 && pixelOffset + (long) stride(side, bitCount) * side > fileBytes) {
+            side--;
+        }
+        long size = pixelOffset + (long) stride(side, bitCount) * side;
+        if (side < 16 || size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Unsupported synthetic image size: " + fileBytes);
+        }
+
+        byte[] data = new byte[(int) size];
+        ByteBuffer header = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) 'B').put((byte) 'M')
+                .putInt((int) size)
+                .putInt(0)
+                .putInt(pixelOffset)
+                .putInt(DIB_HEADER_SIZE)
+                .putInt(side)
+                .putInt(side)
+                .putShort((short) 1)
+                .putShort((short) bitCount)
+                .putInt(BmpHeader.BI_RGB)
+                .putInt((int) (size - pixelOffset))
+                .putInt(2835)
+                .putInt(2835)
+                .putInt(bitCount == 8 ? 256 : 0)
+                .putInt(0);
+        for (int i = 0; i < paletteSize / 4; i++) {
+            header.put((byte) i).put((byte) i).put((byte) i).put((byte) 0);
+        }
+
+        Random random = new Random(seed);
+        byte[] row = new byte[stride(side, bitCount)];
+        for (int y = 0; y < side; y++) {
+            random.nextBytes(row);
+            System.arraycopy(row, 0, data, pixelOffset + y * row.length, row.length);
+        }
+        return data;
+    }
+
+    /**
+     * Creates a random ARGB pixel buffer with roughly the pixel count of a 32-bit BMP of the given size.
+     *
+     * @param fileBytes the approximate image size in bytes (4 bytes per pixel).
+     * @param seed      the seed for the random pixel data.
+     * @return a square buffer; its side is {@code (int) Math.sqrt(pixels.length)}.
+     */
+    public static int[] argbPixels(long fileBytes, long seed) {
+        int side = (int) Math.sqrt((double) fileBytes / 4);
+        int[] pixels = new int[side * side];
+        Random random = new Random(seed);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return pixels;
+    }
+
+    private static int stride(int width, int bitCount) {
+        return (int) (((long) bitCount * width + 31) / 32 * 4);
+    }
+}
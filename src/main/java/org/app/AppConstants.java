@@ -38,6 +38,9 @@ public class AppConstants {
     /** Text for the "Visual Attack (Original)" button. */
     public static final String VISUAL_ATTACK_ORIGINAL_BUTTON_TEXT = "Visual Attack (Original)";
 
+    /** Text for the "Cancel" button that stops running background tasks. */
+    public static final String CANCEL_TASK_BUTTON_TEXT = "Cancel";
+
     // ----------------------------------------
     // Text Field and Prompts
     // ----------------------------------------
@@ -45,6 +48,25 @@ public class AppConstants {
     /** Prompt text displayed in the text field for embedding text. */
     public static final String TEXT_FIELD_PROMPT = "Enter text to embed";
 
+    /** Prompt text displayed in the password field; an empty password embeds the text unencrypted. */
+    public static final String PASSWORD_FIELD_PROMPT = "Password (optional)";
+
+    // ----------------------------------------
+    // Embedding Mode
+    // ----------------------------------------
+
+    /** Label for the bits-per-channel selector. */
+    public static final String BITS_PER_CHANNEL_LABEL = "LSBs per channel:";
+
+    /** Label for the channel selector. */
+    public static final String CHANNELS_LABEL = "Channels:";
+
+    /** Channel selections offered in the UI, parsed with {@link EmbeddingMode#parseChannels(String)}. */
+    public static final String[] CHANNEL_CHOICES = {"ALL", "RGB", "R", "G", "B", "RG", "RB", "GB"};
+
+    /** Label for the check box that spreads the payload over the image in a key-seeded order. */
+    public static final String SCATTER_CHECKBOX_TEXT = "Scatter payload over the image";
+
     // ----------------------------------------
     // Error and Info Messages
     // ----------------------------------------
@@ -61,9 +83,18 @@ public class AppConstants {
     /** Error message displayed when saving an image fails. */
     public static final String ERROR_SAVING_IMAGE = "Error saving image";
 
+    /** Error message displayed when extracting an encrypted payload without a password. */
+    public static final String PASSWORD_REQUIRED_ERROR = "The embedded payload is encrypted. Enter the password first.";
+
+    /** Error message displayed when saving an extracted payload fails. */
+    public static final String ERROR_SAVING_PAYLOAD = "Error saving extracted payload";
+
     /** Error message displayed when applying a visual attack fails. */
     public static final String ERROR_VISUAL_ATTACK = "Error applying visual attack";
 
+    /** Error message displayed when the tiled LSB viewer cannot open an image. */
+    public static final String ERROR_LSB_VIEWER = "Error opening the LSB plane viewer";
+
     /** Error message displayed when no image is loaded for processing. */
     public static final String NO_IMAGE_LOADED_ERROR = "No image loaded.";
 
@@ -89,6 +120,137 @@ public class AppConstants {
     /** Default height for displaying a modified image. */
     public static final double MODIFIED_IMAGE_HEIGHT = 800;
 
+    // ----------------------------------------
+    // Memory-Mapped I/O
+    // ----------------------------------------
+
+    /** Maximum size of a single memory-mapped window over BMP pixel data (16 MiB). */
+    public static final int MAPPED_WINDOW_BYTES = 16 * 1024 * 1024;
+
+    // ----------------------------------------
+    // Streaming I/O
+    // ----------------------------------------
+
+    /** Target size of one buffered chunk of pixel rows when embedding into or extracting from a stream (64 KiB). */
+    public static final int STREAM_CHUNK_BYTES = 64 * 1024;
+
+    /** Largest extracted payload shown in a dialog; larger payloads are saved to a file instead (64 KiB). */
+    public static final int MAX_DISPLAYED_PAYLOAD_BYTES = 64 * 1024;
+
+    // ----------------------------------------
+    // Payload Encryption
+    // ----------------------------------------
+
+    /** PBKDF2 iterations used to derive payload encryption keys from a password. */
+    public static final int KEY_DERIVATION_ITERATIONS = 210_000;
+
+    /** Number of derived keys, one per salt, kept by a {@link PayloadCipher}. */
+    public static final int KEY_CACHE_SIZE = 64;
+
+    // ----------------------------------------
+    // Background Tasks
+    // ----------------------------------------
+
+    /** Number of worker threads running image tasks for the GUI. */
+    public static final int UI_WORKER_THREADS = 2;
+
+    // ----------------------------------------
+    // Parallel Image Scans
+    // ----------------------------------------
+
+    /** Default pixel count from which visual attacks and statistics run in parallel (about 1 MP). */
+    public static final int PARALLEL_THRESHOLD_PIXELS = 1024 * 1024;
+
+    /** Maximum number of pixels in one row band processed by a single fork/join task. */
+    public static final int PARALLEL_BAND_PIXELS = 128 * 1024;
+
+    // ----------------------------------------
+    // Steganalysis
+    // ----------------------------------------
+
+    /** Estimated embedding rate (RS and SPA) from which an image is reported as suspicious. */
+    public static final double STEGANALYSIS_RATE_THRESHOLD = 0.05;
+
+    /** Chi-square embedding probability from which an image is reported as suspicious. */
+    public static final double CHI_SQUARE_PROBABILITY_THRESHOLD = 0.95;
+
+    /** Default number of carrier bytes per window of a chi-square profile. */
+    public static final int CHI_SQUARE_WINDOW_BYTES = 32 * 1024;
+
+    // ----------------------------------------
+    // Result Cache
+    // ----------------------------------------
+
+    /** Maximum estimated size of the results a {@link ResultCache} keeps in memory (256 MiB). */
+    public static final long CACHE_MEMORY_BYTES = 256L * 1024 * 1024;
+
+    /** Maximum total size of the files in the disk tier of a {@link ResultCache} (1 GiB). */
+    public static final long CACHE_DISK_BYTES = 1024L * 1024 * 1024;
+
+    /** Number of files whose content hash a {@link ResultCache} remembers by path, size and modification time. */
+    public static final int CACHE_HASHED_FILES = 4096;
+
+    // ----------------------------------------
+    // LSB Tile Viewer
+    // ----------------------------------------
+
+    /** Pixel count above which the visual attack opens the tiled viewer instead of decoding the whole image. */
+    public static final long LSB_TILED_VIEW_THRESHOLD_PIXELS = 32L * 1024 * 1024;
+
+    /** Width and height, in pixels, of the tiles rendered by {@link LsbTileRenderer}. */
+    public static final int LSB_TILE_SIZE = 256;
+
+    /** Number of tiles an {@link LsbTileRenderer} keeps in memory (about 64 MiB at 256x256). */
+    public static final int LSB_TILE_CACHE_TILES = 256;
+
+    /** Number of background threads rendering tiles. */
+    public static final int LSB_TILE_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    /** Number of bit planes, from the least significant, the tiled viewer can show. */
+    public static final int LSB_TILE_MAX_BITS = 4;
+
+    /** Title of the tiled LSB viewer window; followed by the file name. */
+    public static final String LSB_VIEWER_TITLE = "LSB planes - ";
+
+    /** Label for the bit plane selector of the tiled viewer. */
+    public static final String LSB_VIEWER_BIT_LABEL = "Bit:";
+
+    /** Label for the channel selector of the tiled viewer. */
+    public static final String LSB_VIEWER_CHANNEL_LABEL = "Channel:";
+
+    /** Hint shown in the tiled viewer's toolbar. */
+    public static final String LSB_VIEWER_HINT = "Drag to pan, scroll to zoom";
+
+    // ----------------------------------------
+    // Batch Processing
+    // ----------------------------------------
+
+    /** Number of pending files queued per batch worker before the directory walk is throttled. */
+    public static final int BATCH_QUEUE_DEPTH_PER_THREAD = 4;
+
+    /** Default number of carrier bytes a batch embed reads ahead and writes behind (256 MiB). */
+    public static final long BATCH_IN_FLIGHT_BYTES = 256L * 1024 * 1024;
+
+    /**
+     * Number of carriers that must fit in the in-flight limit for a batch embed to read them whole;
+     * larger carriers are embedded through memory mapping instead.
+     */
+    public static final int BATCH_IN_FLIGHT_CARRIERS = 4;
+
+    /** Default number of files open at once when a batch runs one virtual thread per file. */
+    public static final int BATCH_MAX_OPEN_FILES = 256;
+
+    /** Usage text printed by the headless batch launcher. */
+    public static final String BATCH_USAGE =
+            "Usage:\n" +
+            "  embed   --input <dir> --output <dir> (--text <text> | --payload-file <file>)\n" +
+            "          [--bits 1-4] [--channels ALL|RGB|R|G|B|...] [--scatter] [--password-env <variable>]\n" +
+            "          [--in-flight-mb N] [--threads N] [--report <file>]\n" +
+            "  extract --input <dir> [--legacy] [--password-env <variable>] [--threads N] [--report <file>]\n" +
+            "          [--virtual-threads [--max-open-files N] [--in-flight-mb N]]\n" +
+            "  probe   --input <dir> [--threads N | --virtual-threads [--max-open-files N]] [--report <file>]\n" +
+            "  analyze --input <dir> [--window <bytes>] [--cache-dir <dir>] [--threads N] [--report <file>]";
+
     // ----------------------------------------
     // File Extensions
     // ----------------------------------------
@@ -0,0 +1,192 @@
+package org.app;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous whole-file reads and writes with a bound on the data in flight, so that batch
+ * workers compute while the next carriers are read and the previous outputs are written.
+ * <p>
+ * A file is <em>in flight</em> from the moment {@link #read(Path)} starts reading it until its bytes
+ * are handed back with {@link #release(byte[])}, typically once they have been processed and written
+ * out with {@link #write(Path, byte[])}.
+ * {@code read} blocks while the number of files or bytes in flight is at its limit, which throttles
+ * whoever feeds the pipeline, such as a directory walk. A single file larger than the byte limit is
+ * admitted once nothing else is in flight.
+ * </p>
+ * <p>
+ * I/O goes through {@link AsynchronousFileChannel}, whose completions run on the default
+ * asynchronous channel group; callers should hand the returned futures over to their own
+ * workers rather than compute on those threads. An instance is thread-safe.
+ * </p>
+ */
+public class AsyncFilePipeline {
+
+    private final int maxFiles;
+    private final long maxBytes;
+    private int files;
+    private long bytes;
+
+    /**
+     * Creates a pipeline with the given limits.
+     *
+     * @param maxFiles the maximum number of files in flight.
+     * @param maxBytes the maximum number of bytes in flight.
+     */
+    public AsyncFilePipeline(int maxFiles, long maxBytes) {
+        if (maxFiles <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Pipeline limits must be positive: " + maxFiles + " files, "
+                    + maxBytes + " bytes");
+        }
+        this.maxFiles = maxFiles;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Starts reading a whole file, first waiting until it fits in the pipeline.
+     *
+     * @param file the file to read; at most {@link Integer#MAX_VALUE} bytes.
+     * @return completes with the file content, or exceptionally if it cannot be read; the content
+     *         stays in flight until released.
+     * @throws IOException          if the file cannot be opened or is too large for an array.
+     * @throws InterruptedException if interrupted while waiting for room in the pipeline.
+     */
+    public CompletableFuture<byte[]> read(Path file) throws IOException, InterruptedException {
+        AsynchronousFileChannel channel = AsynchronousFileChannel.open(file, StandardOpenOption.READ);
+        long size;
+        try {
+            size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to read into memory: " + file);
+            }
+            acquire(size);
+        } catch (IOException | InterruptedException e) {
+            channel.close();
+            throw e;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        CompletableFuture<byte[]> loaded = new CompletableFuture<>();
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        transfer(channel, buffer, true, loaded);
+        loaded.whenComplete((data, error) -> {
+            if (error != null) {
+                // Completed before the release, so the caller reports the failure before the file leaves the pipeline
+                result.completeExceptionally(error);
+                release(size);
+            } else {
+                result.complete(data);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Starts writing bytes to a file, replacing it. The bytes stay in flight until released.
+     *
+     * @param file the file to write.
+     * @param data the bytes to write, typically as returned by {@link #read(Path)}.
+     * @return completes once the file is written and closed, or exceptionally if writing fails.
+     */
+    public CompletableFuture<Void> write(Path file, byte[] data) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        try {
+            AsynchronousFileChannel channel = AsynchronousFileChannel.open(file, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            transfer(channel, ByteBuffer.wrap(data), false, result);
+        } catch (IOException e) {
+            result.completeExceptionally(e);
+        }
+        return result.thenApply(written -> null);
+    }
+
+    /**
+     * Takes bytes read through this pipeline out of flight, once they are no longer needed.
+     *
+     * @param data the bytes returned by {@link #read(Path)}.
+     */
+    public void release(byte[] data) {
+        release(data.length);
+    }
+
+    /**
+     * Waits until every file has left the pipeline.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public synchronized void awaitIdle() throws InterruptedException {
+        while (files > 0) {
+            wait();
+        }
+    }
+
+    private synchronized void acquire(long size) throws InterruptedException {
+        while (files > 0 && (files >= maxFiles || bytes + size > maxBytes)) {
+            wait();
+        }
+        files++;
+        bytes += size;
+    }
+
+    private synchronized void release(long size) {
+        files--;
+        bytes -= size;
+        notifyAll();
+    }
+
+    /**
+     * Reads or writes the remaining bytes of a buffer at its position in the file, one completion at a
+     * time, then closes the channel and completes the future.
+     */
+    private static void transfer(AsynchronousFileChannel channel, ByteBuffer buffer, boolean reading,
+                                 CompletableFuture<byte[]> result) {
+        if (!buffer.hasRemaining()) {
+            close(channel, buffer, null, result);
+            return;
+        }
+        CompletionHandler<Integer, Void> handler = new CompletionHandler<>() {
+            @Override
+            public void completed(Integer count, Void attachment) {
+                if (count < 0) {
+                    close(channel, buffer, new EOFException("File shrank while being read"), result);
+                } else {
+                    transfer(channel, buffer, reading, result);
+                }
+            }
+
+            @Override
+            public void failed(Throwable error, Void attachment) {
+                close(channel, buffer, error, result);
+            }
+        };
+        if (reading) {
+            channel.read(buffer, buffer.position(), null, handler);
+        } else {
+            channel.write(buffer, buffer.position(), null, handler);
+        }
+    }
+
+    private static void close(AsynchronousFileChannel channel, ByteBuffer buffer, Throwable error,
+                              CompletableFuture<byte[]> result) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            if (error == null) {
+                error = e;
+            } else {
+                error.addSuppressed(e);
+            }
+        }
+        if (error != null) {
+            result.completeExceptionally(error);
+        } else {
+            result.complete(buffer.array());
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package org.app;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Immutable set of options for a headless batch run, parsed from command-line arguments.
+ * <p>
+ * Supported syntax:
+ * </p>
+ * <pre>
+ * embed   --input &lt;dir&gt; --output &lt;dir&gt; (--text &lt;text&gt; | --payload-file &lt;file&gt;)
+ *         [--bits 1-4] [--channels ALL|RGB|R|G|B|...] [--scatter] [--password-env &lt;variable&gt;]
+ *         [--in-flight-mb N] [--threads N] [--report &lt;file&gt;]
+ * extract --input &lt;dir&gt; [--legacy] [--password-env &lt;variable&gt;] [--threads N] [--report &lt;file&gt;]
+ *         [--virtual-threads [--max-open-files N] [--in-flight-mb N]]
+ * probe   --input &lt;dir&gt; [--threads N | --virtual-threads [--max-open-files N]] [--report &lt;file&gt;]
+ * analyze --input &lt;dir&gt; [--window &lt;bytes&gt;] [--cache-dir &lt;dir&gt;] [--threads N] [--report &lt;file&gt;]
+ * </pre>
+ * <p>
+ * With {@code --window}, analysis also computes a {@link ChiSquareProfile} with windows of that many
+ * carrier bytes and reports how far the payload extends from the start of the pixel data. With
+ * {@code --cache-dir}, analysis results are cached by file content in that directory (see
+ * {@link ResultCache}), so duplicate images, in this run or a later one, are analyzed once.
+ * </p>
+ * <p>
+ * Embedding reads carriers ahead and writes outputs behind through an {@link AsyncFilePipeline}, holding
+ * at most {@code --in-flight-mb} mebibytes of image data at a time ({@link AppConstants#BATCH_IN_FLIGHT_BYTES}
+ * by default).
+ * </p>
+ * <p>
+ * With {@code --virtual-threads}, extraction and probing run each file on its own virtual thread instead
+ * of a fixed pool, for directories on high-latency storage such as network mounts. At most
+ * {@code --max-open-files} files are processed at once ({@link AppConstants#BATCH_MAX_OPEN_FILES} by default),
+ * and extractions wait while the payloads being extracted exceed {@code --in-flight-mb}.
+ * </p>
+ * <p>
+ * The password is read from an environment variable rather than the command line, so it does not
+ * show up in process listings or shell history.
+ * </p>
+ */
+public class BatchOptions {
+
+    /**
+     * Operation performed on every BMP file found in the input tree.
+     */
+    public enum Mode {
+        /** Embed the payload into each carrier and write the result to the output tree. */
+        EMBED,
+        /** Extract the embedded payload from each file and record it in the report. */
+        EXTRACT,
+        /** Record dimensions, capacity and payload presence of each file, reading only its headers. */
+        PROBE,
+        /** Record the steganalysis estimates of each file, to screen for images carrying LSB payloads. */
+        ANALYZE
+    }
+
+    private final Mode mode;
+    private final Path inputDirectory;
+    private final Path outputDirectory;
+    private final byte[] payload;
+    private final EmbeddingMode embeddingMode;
+    private final PayloadCipher cipher;
+    private final int threads;
+    private final Path reportFile;
+    private final boolean legacyFormat;
+    private final int profileWindowBytes;
+    private final Path cacheDirectory;
+    private final long inFlightBytes;
+    private final boolean virtualThreads;
+    private final int maxOpenFiles;
+
+    private BatchOptions(Mode mode, Path inputDirectory, Path outputDirectory, byte[] payload,
+                         EmbeddingMode embeddingMode, PayloadCipher cipher, int threads, Path reportFile,
+                         boolean legacyFormat, int profileWindowBytes, Path cacheDirectory, long inFlightBytes,
+                         boolean virtualThreads, int maxOpenFiles) {
+        this.mode = mode;
+        this.inputDirectory = inputDirectory;
+        this.outputDirectory = outputDirectory;
+        this.payload = payload;
+        this.embeddingMode = embeddingMode;
+        this.cipher = cipher;
+        this.threads = threads;
+        this.reportFile = reportFile;
+        this.legacyFormat = legacyFormat;
+        this.profileWindowBytes = profileWindowBytes;
+        this.cacheDirectory = cacheDirectory;
+        this.inFlightBytes = inFlightBytes;
+        this.virtualThreads = virtualThreads;
+        this.maxOpenFiles = maxOpenFiles;
+    }
+
+    /**
+     * Parses command-line arguments into a {@code BatchOptions} instance.
+     *
+     * @param args the raw command-line arguments; the first one must be the mode.
+     * @return the parsed options.
+     * @throws IllegalArgumentException if the arguments are missing or malformed.
+     * @throws IOException              if the payload file cannot be read.
+     */
+    public static BatchOptions parse(String[] args) throws IOException {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Missing mode (embed, extract, probe or analyze)");
+        }
+
+        Mode mode = switch (args[0].toLowerCase()) {
+            case "embed" -> Mode.EMBED;
+            case "extract" -> Mode.EXTRACT;
+            case "probe" -> Mode.PROBE;
+            case "analyze" -> Mode.ANALYZE;
+            default -> throw new IllegalArgumentException("Unknown mode: " + args[0]);
+        };
+
+        Path input = null;
+        Path output = null;
+        Path report = null;
+        String text = null;
+        Path payloadFile = null;
+        int bits = EmbeddingMode.DEFAULT.getBitsPerChannel();
+        int channels = EmbeddingMode.ALL_CHANNELS;
+        String passwordVariable = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean legacy = false;
+        boolean scatter = false;
+        int profileWindowBytes = 0;
+        Path cacheDirectory = null;
+        long inFlightBytes = AppConstants.BATCH_IN_FLIGHT_BYTES;
+        boolean virtualThreads = false;
+        int maxOpenFiles = AppConstants.BATCH_MAX_OPEN_FILES;
+
+        for (int i = 1; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--legacy")) {
+                legacy = true;
+                continue;
+            }
+            if (option.equals("--scatter")) {
+                scatter = true;
+                continue;
+            }
+            if (option.equals("--virtual-threads")) {
+                virtualThreads = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for option " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--input" -> input = Path.of(value);
+                case "--output" -> output = Path.of(value);
+                case "--report" -> report = Path.of(value);
+                case "--text" -> text = value;
+                case "--payload-file" -> payloadFile = Path.of(value);
+                case "--bits" -> bits = parsePositive(option, value);
+                case "--channels" -> channels = EmbeddingMode.parseChannels(value);
+                case "--password-env" -> passwordVariable = value;
+                case "--threads" -> threads = parsePositive(option, value);
+                case "--window" -> profileWindowBytes = parsePositive(option, value);
+                case "--cache-dir" -> cacheDirectory = Path.of(value);
+                case "--in-flight-mb" -> inFlightBytes = parsePositive(option, value) * 1024L * 1024;
+                case "--max-open-files" -> maxOpenFiles = parsePositive(option, value);
+                default -> throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+
+        if (input == null || !Files.isDirectory(input)) {
+            throw new IllegalArgumentException("--input must point to an existing directory");
+        }
+
+        if (virtualThreads && mode != Mode.EXTRACT && mode != Mode.PROBE) {
+            throw new IllegalArgumentException("--virtual-threads is only supported for extract and probe");
+        }
+
+        byte[] payload = null;
+        if (mode == Mode.EMBED) {
+            if (output == null) {
+                throw new IllegalArgumentException("--output is required for embed");
+            }
+            if ((text == null) == (payloadFile == null)) {
+                throw new IllegalArgumentException("Exactly one of --text or --payload-file is required for embed");
+            }
+            payload = text != null ? text.getBytes(StandardCharsets.UTF_8) : Files.readAllBytes(payloadFile);
+        }
+
+        PayloadCipher cipher = null;
+        if (passwordVariable != null) {
+            String password = System.getenv(passwordVariable);
+            if (password == null || password.isEmpty()) {
+                throw new IllegalArgumentException("Environment variable " + passwordVariable + " is not set");
+            }
+            // One cipher for the whole run, so the key is derived once rather than per file
+            cipher = new PayloadCipher(password.toCharArray());
+        }
+
+        EmbeddingMode embeddingMode = new EmbeddingMode(bits, channels, scatter);
+        return new BatchOptions(mode, input, output, payload, embeddingMode, cipher, threads, report, legacy,
+                profileWindowBytes, cacheDirectory, inFlightBytes, virtualThreads, maxOpenFiles);
+    }
+
+    private static int parsePositive(String option, String value) {
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed <= 0) {
+                throw new IllegalArgumentException(option + " must be positive: " + value);
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " must be a number: " + value, e);
+        }
+    }
+
+    /**
+     * Returns the operation to perform.
+     *
+     * @return the operation to perform.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns the root of the directory tree scanned for BMP files.
+     *
+     * @return the root of the directory tree scanned for BMP files.
+     */
+    public Path getInputDirectory() {
+        return inputDirectory;
+    }
+
+    /**
+     * Returns the root of the output tree for embedded images, or {@code null} in extract mode.
+     *
+     * @return the root of the output tree for embedded images, or {@code null} in extract mode.
+     */
+    public Path getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    /**
+     * Returns the payload to embed, or {@code null} in extract mode.
+     *
+     * @return the payload to embed, or {@code null} in extract mode.
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * Returns how the payload is embedded; extraction reads the mode from each image instead.
+     *
+     * @return the embedding mode.
+     */
+    public EmbeddingMode getEmbeddingMode() {
+        return embeddingMode;
+    }
+
+    /**
+     * Returns the cipher that encrypts embedded payloads and decrypts extracted ones.
+     *
+     * @return the cipher, or {@code null} if no password was given.
+     */
+    public PayloadCipher getCipher() {
+        return cipher;
+    }
+
+    /**
+     * Returns the number of worker threads.
+     *
+     * @return the number of worker threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns the JSON-lines report file, or {@code null} to write the report to standard output.
+     *
+     * @return the JSON-lines report file, or {@code null} to write the report to standard output.
+     */
+    public Path getReportFile() {
+        return reportFile;
+    }
+
+    /**
+     * Returns whether extraction falls back to the null-terminated format used before payload framing.
+     *
+     * @return {@code true} if images without a payload header are decoded in the legacy format.
+     */
+    public boolean isLegacyFormat() {
+        return legacyFormat;
+    }
+
+    /**
+     * Returns the window size of the chi-square profile computed during analysis.
+     *
+     * @return the number of carrier bytes per window, or 0 if no profile is computed.
+     */
+    public int getProfileWindowBytes() {
+        return profileWindowBytes;
+    }
+
+    /**
+     * Returns the directory of the result cache used during analysis.
+     *
+     * @return the cache directory, or {@code null} if results are not cached.
+     */
+    public Path getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Returns the maximum number of bytes of carrier data read ahead and written behind during embedding,
+     * or of payloads extracted at once on virtual threads.
+     *
+     * @return the in-flight limit in bytes.
+     */
+    public long getInFlightBytes() {
+        return inFlightBytes;
+    }
+
+    /**
+     * Returns whether each file is processed on its own virtual thread instead of a fixed pool.
+     *
+     * @return {@code true} to run one virtual thread per file.
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Returns the maximum number of files processed at once on virtual threads.
+     *
+     * @return the open-file limit.
+     */
+    public int getMaxOpenFiles() {
+        return maxOpenFiles;
+    }
+}
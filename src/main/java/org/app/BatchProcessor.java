@@ -0,0 +1,358 @@
+package org.app;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Headless batch engine that embeds into, extracts from, probes or analyzes every BMP file in a directory tree.
+ * <p>
+ * Files are distributed over a fixed pool of worker threads. The walk queues at most
+ * {@link AppConstants#BATCH_QUEUE_DEPTH_PER_THREAD} files per thread, so walking a tree with millions
+ * of files does not queue them all in memory: when the queue is full, the walking thread processes
+ * the next file itself until workers catch up.
+ * No JavaFX classes are touched, so the toolkit is never started.
+ * </p>
+ * <p>
+ * When embedding, carriers are read ahead and outputs written behind through an {@link AsyncFilePipeline},
+ * so disks and workers stay busy at the same time. The walk starts reading each carrier as it is found,
+ * a worker embeds into it once read, and the result is written asynchronously while the worker moves on;
+ * the walk is held back while {@link BatchOptions#getInFlightBytes()} of carriers are in flight.
+ * Completed reads and writes are always queued for the workers, never processed on the I/O threads.
+ * Carriers too large to keep several in flight are embedded through memory mapping instead.
+ * </p>
+ * <p>
+ * With {@link BatchOptions#isVirtualThreads()}, extraction and probing run one virtual thread per file,
+ * so waiting on slow storage does not hold a platform thread. The walk is held back while
+ * {@link BatchOptions#getMaxOpenFiles()} files are being processed. Each extraction first probes the
+ * payload header, skips files without a payload, and waits while the payloads being extracted would
+ * exceed {@link BatchOptions#getInFlightBytes()}; its record adds the probe latency to the total.
+ * </p>
+ */
+public class BatchProcessor {
+
+    private static final Logger logger = LogManager.getLogger(BatchProcessor.class);
+
+    private final BatchOptions options;
+    private final ResultCache cache;
+    private final Semaphore payloadBytes;
+
+    /**
+     * Creates a processor for the given options.
+     *
+     * @param options the parsed batch options.
+     * @throws IOException if the cache directory cannot be created.
+     */
+    public BatchProcessor(BatchOptions options) throws IOException {
+        this.options = options;
+        this.cache = options.getCacheDirectory() == null ? null
+                : new ResultCache(AppConstants.CACHE_MEMORY_BYTES, options.getCacheDirectory(), AppConstants.CACHE_DISK_BYTES);
+        this.payloadBytes = options.isVirtualThreads()
+                ? new Semaphore((int) Math.min(Integer.MAX_VALUE, options.getInFlightBytes())) : null;
+    }
+
+    /**
+     * Processes every BMP file under the input directory and writes one report record per file.
+     *
+     * @param report the report receiving the per-file results.
+     * @throws IOException          if the input tree cannot be walked.
+     * @throws InterruptedException if interrupted while waiting for the workers to finish.
+     */
+    public void run(BatchReportWriter report) throws IOException, InterruptedException {
+        if (options.isVirtualThreads()) {
+            runOnVirtualThreads(report);
+            return;
+        }
+        int threads = options.getThreads();
+        int queueDepth = threads * AppConstants.BATCH_QUEUE_DEPTH_PER_THREAD;
+        // Unbounded so that pipeline completions are never rejected; the pipeline bounds those, the walk the rest
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), workerThreadFactory());
+        AsyncFilePipeline pipeline = options.getMode() == BatchOptions.Mode.EMBED
+                ? new AsyncFilePipeline(queueDepth, options.getInFlightBytes()) : null;
+
+        try (Stream<Path> files = Files.walk(options.getInputDirectory())) {
+            Iterator<Path> bmpFiles = files.filter(Files::isRegularFile).filter(BatchProcessor::isBmp).iterator();
+            while (bmpFiles.hasNext()) {
+                Path file = bmpFiles.next();
+                if (pipeline != null && isPipelined(file)) {
+                    readAhead(file, pipeline, executor, report);
+                } else if (executor.getQueue().size() >= queueDepth) {
+                    processFile(file, report);
+                } else {
+                    executor.execute(() -> processFile(file, report));
+                }
+            }
+            if (pipeline != null) {
+                // Carriers still being read are handed to the workers on completion, so wait before shutting them down
+                pipeline.awaitIdle();
+            }
+        } finally {
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.info("Waiting for {} active batch workers", executor.getActiveCount());
+            }
+        }
+    }
+
+    private void runOnVirtualThreads(BatchReportWriter report) throws IOException, InterruptedException {
+        Semaphore openFiles = new Semaphore(options.getMaxOpenFiles());
+        // Closing the executor waits for every file to be processed
+        try (ExecutorService executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("batch-file-", 1).factory());
+             Stream<Path> files = Files.walk(options.getInputDirectory())) {
+            Iterator<Path> bmpFiles = files.filter(Files::isRegularFile).filter(BatchProcessor::isBmp).iterator();
+            while (bmpFiles.hasNext()) {
+                Path file = bmpFiles.next();
+                openFiles.acquire();
+                executor.execute(() -> {
+                    try {
+                        processFile(file, report);
+                    } finally {
+                        openFiles.release();
+                    }
+                });
+            }
+        }
+    }
+
+    private void processFile(Path file, BatchReportWriter report) {
+        String operation = options.getMode().name().toLowerCase(Locale.ROOT);
+        long start = System.nanoTime();
+        try {
+            Map<String, Object> fields = switch (options.getMode()) {
+                case EMBED -> embed(file);
+                case EXTRACT -> payloadBytes != null ? probeAndExtract(file) : extract(file);
+                case PROBE -> probe(file);
+                case ANALYZE -> analyze(file);
+            };
+            succeed(fields, start, report);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            fail(file, operation, e, report);
+        }
+    }
+
+    private static void succeed(Map<String, Object> fields, long start, BatchReportWriter report) {
+        fields.put("millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        try {
+            report.success(fields);
+        } catch (IOException e) {
+            logger.error("Failed to write report record for {}", fields.get("file"), e);
+        }
+    }
+
+    private static void fail(Path file, String operation, Throwable error, BatchReportWriter report) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        logger.warn("Batch {} failed for {}", operation, file, error);
+        try {
+            report.failure(file, operation, error);
+        } catch (IOException reportError) {
+            logger.error("Failed to write report record for {}", file, reportError);
+        }
+    }
+
+    /**
+     * Returns whether a carrier is small enough to be read whole by the pipeline.
+     */
+    private boolean isPipelined(Path file) {
+        try {
+            return Files.size(file) <= options.getInFlightBytes() / AppConstants.BATCH_IN_FLIGHT_CARRIERS;
+        } catch (IOException e) {
+            return false; // reported by the mapped path
+        }
+    }
+
+    /**
+     * Starts reading a carrier and hands it to a worker once read. Blocks while the pipeline is full.
+     */
+    private void readAhead(Path file, AsyncFilePipeline pipeline, ExecutorService executor,
+                           BatchReportWriter report) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            pipeline.read(file).whenCompleteAsync((carrier, error) -> {
+                if (error != null) {
+                    fail(file, "embed", error, report);
+                } else {
+                    embedLoaded(file, carrier, start, pipeline, executor, report);
+                }
+            }, executor);
+        } catch (IOException e) {
+            fail(file, "embed", e, report);
+        }
+    }
+
+    /**
+     * Embeds into a carrier read by the pipeline and starts writing the result.
+     */
+    private void embedLoaded(Path file, byte[] carrier, long start, AsyncFilePipeline pipeline,
+                             ExecutorService executor, BatchReportWriter report) {
+        Path target = targetOf(file);
+        try {
+            ImageCryptoTools.embedBytesInImageBytes(carrier, options.getPayload(), options.getEmbeddingMode(),
+                    options.getCipher());
+            Files.createDirectories(target.toAbsolutePath().getParent());
+        } catch (Exception e) {
+            pipeline.release(carrier);
+            fail(file, "embed", e, report);
+            return;
+        }
+        pipeline.write(target, carrier).whenCompleteAsync((written, error) -> {
+            if (error != null) {
+                fail(file, "embed", error, report);
+            } else {
+                succeed(embedRecord(file, target), start, report);
+            }
+            // Released once reported, so the run does not finish before the report is complete
+            pipeline.release(carrier);
+        }, executor);
+    }
+
+    private Map<String, Object> embed(Path file) throws IOException {
+        Path target = targetOf(file);
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        ImageCryptoTools.embedBytesInFile(file, target, options.getPayload(), options.getEmbeddingMode(),
+                options.getCipher());
+        return embedRecord(file, target);
+    }
+
+    private Path targetOf(Path file) {
+        return options.getOutputDirectory().resolve(options.getInputDirectory().relativize(file));
+    }
+
+    private Map<String, Object> embedRecord(Path file, Path target) {
+        Map<String, Object> fields = record(file, "embed");
+        fields.put("output", target.toString());
+        fields.put("bytes", options.getPayload().length);
+        fields.put("mode", options.getEmbeddingMode().toString());
+        fields.put("encrypted", options.getCipher() != null);
+        return fields;
+    }
+
+    private Map<String, Object> extract(Path file) throws IOException {
+        Map<String, Object> fields = record(file, "extract");
+        if (options.isLegacyFormat()) {
+            String text = ImageCryptoTools.extractStringFromFile(file, options.getCipher());
+            fields.put("found", !text.isEmpty());
+            fields.put("text", text);
+            return fields;
+        }
+
+        byte[] payload = ImageCryptoTools.extractPayloadFromFile(file, options.getCipher());
+        fields.put("found", payload != null);
+        if (payload != null) {
+            fields.put("bytes", payload.length);
+            fields.put("text", new String(payload, StandardCharsets.UTF_8));
+        }
+        return fields;
+    }
+
+    /**
+     * Probes the payload header, then extracts the payload within the in-flight limit. A payload is sized
+     * by the larger of its stored and decompressed sizes, or by the capacity when neither is known in
+     * advance, and counted twice: once as bytes and once as the text decoded from them.
+     */
+    private Map<String, Object> probeAndExtract(Path file) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        BmpProbe probe = BmpProbe.probe(file);
+        long probeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Map<String, Object> fields;
+        if (!probe.hasPayload() && !options.isLegacyFormat()) {
+            fields = record(file, "extract");
+            fields.put("found", false);
+        } else {
+            PayloadFrame frame = probe.getFrame();
+            long payloadSize = !probe.hasPayload() ? probe.getCapacity(EmbeddingMode.DEFAULT)
+                    : frame.isChunked() ? probe.getCapacity(probe.getPayloadMode())
+                    : Math.max(frame.getLength(), frame.getPayloadSize());
+            long expected = 2 * payloadSize;
+            int permits = (int) Math.min(expected, Math.min(Integer.MAX_VALUE, options.getInFlightBytes()));
+            payloadBytes.acquire(permits);
+            try {
+                fields = extract(file);
+            } finally {
+                payloadBytes.release(permits);
+            }
+        }
+        fields.put("probeMillis", probeMillis);
+        return fields;
+    }
+
+    private static Map<String, Object> probe(Path file) throws IOException {
+        BmpProbe probe = BmpProbe.probe(file);
+        BmpHeader header = probe.getHeader();
+        Map<String, Object> fields = record(file, "probe");
+        fields.put("width", header.getWidth());
+        fields.put("height", header.getHeight());
+        fields.put("bitCount", header.getBitCount());
+        fields.put("capacity", probe.getCapacity(EmbeddingMode.DEFAULT));
+        fields.put("found", probe.hasPayload());
+        if (probe.hasPayload()) {
+            PayloadFrame frame = probe.getFrame();
+            fields.put("mode", probe.getPayloadMode().toString());
+            fields.put("storedBytes", frame.isChunked() ? -1 : frame.getLength());
+            fields.put("compressed", frame.isCompressed());
+            fields.put("encrypted", frame.isEncrypted());
+        }
+        return fields;
+    }
+
+    private Map<String, Object> analyze(Path file) throws Exception {
+        Steganalysis analysis = cache == null ? Steganalysis.analyze(file)
+                : cache.get(file, "steganalysis", Steganalysis.CACHE_CODEC, () -> Steganalysis.analyze(file));
+        Map<String, Object> fields = record(file, "analyze");
+        fields.put("chiSquareProbability", analysis.getChiSquareProbability());
+        fields.put("rsRate", analysis.getRsRate());
+        fields.put("spaRate", analysis.getSpaRate());
+        fields.put("estimatedRate", analysis.getEstimatedRate());
+        fields.put("suspicious", analysis.isSuspicious());
+        if (options.getProfileWindowBytes() > 0) {
+            ChiSquareProfile profile = ChiSquareProfile.of(file, options.getProfileWindowBytes());
+            fields.put("windows", profile.getWindowCount());
+            fields.put("suspectCarrierBytes", profile.getSuspectLength(AppConstants.CHI_SQUARE_PROBABILITY_THRESHOLD));
+        }
+        return fields;
+    }
+
+    private static Map<String, Object> record(Path file, String operation) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("file", file.toString());
+        fields.put("operation", operation);
+        return fields;
+    }
+
+    private static boolean isBmp(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".bmp");
+    }
+
+    private static ThreadFactory workerThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "batch-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
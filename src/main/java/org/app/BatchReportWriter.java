@@ -0,0 +1,161 @@
+package org.app;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe writer that streams batch results as JSON lines, one object per processed file.
+ * <p>
+ * Each record is written and flushed as soon as it is produced, so the report can be tailed
+ * while a long batch is still running.
+ * </p>
+ */
+public class BatchReportWriter implements Closeable {
+
+    private final Writer writer;
+    private final boolean closeUnderlying;
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * Creates a report writer targeting the given file, or standard output if the file is {@code null}.
+     *
+     * @param reportFile the report file to create or truncate, or {@code null} for standard output.
+     * @throws IOException if the report file cannot be opened.
+     */
+    public BatchReportWriter(Path reportFile) throws IOException {
+        if (reportFile == null) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            this.closeUnderlying = false;
+        } else {
+            Path parent = reportFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            this.writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8);
+            this.closeUnderlying = true;
+        }
+    }
+
+    /**
+     * Writes a record for a successfully processed file.
+     *
+     * @param fields the record fields in output order; values may be strings, numbers or booleans.
+     * @throws IOException if the record cannot be written.
+     */
+    public void success(Map<String, Object> fields) throws IOException {
+        succeeded.incrementAndGet();
+        write(fields, "ok");
+    }
+
+    /**
+     * Writes a record for a file that could not be processed.
+     *
+     * @param file      the file that failed.
+     * @param operation the operation that was attempted.
+     * @param error     the cause of the failure.
+     * @throws IOException if the record cannot be written.
+     */
+    public void failure(Path file, String operation, Throwable error) throws IOException {
+        failed.incrementAndGet();
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("file", file.toString());
+        fields.put("operation", operation);
+        fields.put("error", String.valueOf(error.getMessage()));
+        write(fields, "error");
+    }
+
+    private void write(Map<String, Object> fields, String status) throws IOException {
+        StringBuilder line = new StringBuilder(128);
+        line.append("{\"status\":\"").append(status).append('"');
+        for (Map.Entry<String, Object> entry : fields.entrySet()) {
+            line.append(",\"").append(escape(entry.getKey())).append("\":");
+            Object value = entry.getValue();
+            if (value instanceof Double number && !Double.isFinite(number)) {
+                // JSON has no NaN or infinity
+                line.append("null");
+            } else if (value instanceof Number || value instanceof Boolean) {
+                line.append(value);
+            } else {
+                line.append('"').append(escape(String.valueOf(value))).append('"');
+            }
+        }
+        line.append("}\n");
+
+        synchronized (writer) {
+            writer.write(line.toString());
+            writer.flush();
+        }
+    }
+
+    /**
+     * Escapes a string for inclusion in a JSON string literal.
+     *
+     * @param value the raw string.
+     * @return the escaped string, without surrounding quotes.
+     */
+    static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 16);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> escaped.append("\\\"");
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                case '\t' -> escaped.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+                }
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Returns the number of files recorded as successfully processed.
+     *
+     * @return the success count.
+     */
+    public int getSucceeded() {
+        return succeeded.get();
+    }
+
+    /**
+     * Returns the number of files recorded as failed.
+     *
+     * @return the failure count.
+     */
+    public int getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Flushes the report and closes the underlying file. Standard output is flushed but left open.
+     *
+     * @throws IOException if flushing or closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writer) {
+            if (closeUnderlying) {
+                writer.close();
+            } else {
+                writer.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package org.app;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Model of a BMP file header and DIB header.
+ * <p>
+ * The header tells where pixel data starts ({@code bfOffBits}), how many bits each pixel uses,
+ * how wide each row is including its padding to a 4-byte boundary, and whether rows are stored
+ * bottom-up (positive height) or top-down (negative height). Embedding and extraction use it to
+ * address only pixel bytes, skipping palettes, colour masks and row padding.
+ * </p>
+ *
+ * <p>
+ * The bytes that can carry payload bits are called <em>carrier bytes</em>: every byte of every row
+ * that holds pixel data, in file order. Carrier byte {@code i} lives at {@link #carrierOffset(long)}.
+ * </p>
+ */
+public class BmpHeader {
+
+    /** Size of the BITMAPFILEHEADER structure in bytes. */
+    public static final int FILE_HEADER_SIZE = 14;
+
+    /** Number of bytes that must be read to parse any supported header (file header + BITMAPV5HEADER). */
+    public static final int MAX_HEADER_SIZE = FILE_HEADER_SIZE + 124;
+
+    /** Uncompressed pixel data. */
+    public static final int BI_RGB = 0;
+
+    /** Uncompressed pixel data with explicit colour masks. */
+    public static final int BI_BITFIELDS = 3;
+
+    /** Uncompressed pixel data with explicit colour and alpha masks. */
+    public static final int BI_ALPHABITFIELDS = 6;
+
+    /**
+     * Known DIB header variants, identified by their size field.
+     */
+    public enum DibHeaderType {
+        /** OS/2 1.x BITMAPCOREHEADER. */
+        CORE(12),
+        /** OS/2 2.x header, short form. */
+        OS2_V2_SHORT(16),
+        /** Windows BITMAPINFOHEADER. */
+        INFO(40),
+        /** BITMAPV2INFOHEADER (adds RGB masks). */
+        V2(52),
+        /** BITMAPV3INFOHEADER (adds alpha mask). */
+        V3(56),
+        /** OS/2 2.x header, full form. */
+        OS2_V2(64),
+        /** BITMAPV4HEADER (adds colour space). */
+        V4(108),
+        /** BITMAPV5HEADER (adds ICC profile). */
+        V5(124);
+
+        private final int size;
+
+        DibHeaderType(int size) {
+            this.size = size;
+        }
+
+        /**
+         * Returns the size of this header variant in bytes.
+         *
+         * @return the header size.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        static DibHeaderType fromSize(int size) throws IOException {
+            for (DibHeaderType type : values()) {
+                if (type.size == size) {
+                    return type;
+                }
+            }
+            throw new IOException("Unsupported DIB header size: " + size);
+        }
+    }
+
+    private final long fileSize;
+    private final long pixelDataOffset;
+    private final DibHeaderType dibHeaderType;
+    private final int width;
+    private final int height;
+    private final boolean topDown;
+    private final int bitCount;
+    private final int compression;
+    private final int rowStride;
+    private final int pixelBytesPerRow;
+
+    private BmpHeader(long fileSize, long pixelDataOffset, DibHeaderType dibHeaderType, int width, int height,
+                      boolean topDown, int bitCount, int compression) {
+        this.fileSize = fileSize;
+        this.pixelDataOffset = pixelDataOffset;
+        this.dibHeaderType = dibHeaderType;
+        this.width = width;
+        this.height = height;
+        this.topDown = topDown;
+        this.bitCount = bitCount;
+        this.compression = compression;
+        this.pixelBytesPerRow = (int) (((long) bitCount * width + 7) / 8);
+        this.rowStride = (int) (((long) bitCount * width + 31) / 32 * 4);
+    }
+
+    /**
+     * Returns the header of an uncompressed, bottom-up 24-bit BMP with a BITMAPINFOHEADER, the layout an
+     * image of the given size would have if saved as a BMP.
+     *
+     * @param width  the image width in pixels.
+     * @param height the image height in pixels.
+     * @return the header.
+     */
+    static BmpHeader of24Bit(int width, int height) {
+        long pixelDataOffset = FILE_HEADER_SIZE + DibHeaderType.INFO.getSize();
+        long fileSize = pixelDataOffset + ((24L * width + 31) / 32 * 4) * height;
+        return new BmpHeader(fileSize, pixelDataOffset, DibHeaderType.INFO, width, height, false, 24, BI_RGB);
+    }
+
+    /**
+     * Parses the header at the start of a complete BMP file held in memory.
+     *
+     * @param imageBytes the BMP file contents.
+     * @return the parsed header.
+     * @throws IOException if the data is not a supported, uncompressed BMP or is truncated.
+     */
+    public static BmpHeader parse(byte[] imageBytes) throws IOException {
+        try (Metrics.Sample sample = Metrics.start(Metrics.Stage.HEADER_PARSE)) {
+            sample.addBytes(Math.min(MAX_HEADER_SIZE, imageBytes.length));
+            BmpHeader header = parse(ByteBuffer.wrap(imageBytes), imageBytes.length);
+            header.checkPixelDataFits(imageBytes.length);
+            return header;
+        }
+    }
+
+    /**
+     * Reads and parses the header of a BMP file without reading its pixel data.
+     *
+     * @param file the BMP file.
+     * @return the parsed header.
+     * @throws IOException if the file cannot be read or is not a supported, uncompressed BMP.
+     */
+    public static BmpHeader read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel);
+        }
+    }
+
+    /**
+     * Reads and parses the header from the start of an open file channel.
+     * The channel position is not modified.
+     *
+     * @param channel the channel positioned anywhere; reading starts at offset 0.
+     * @return the parsed header.
+     * @throws IOException if the channel cannot be read or does not hold a supported, uncompressed BMP.
+     */
+    public static BmpHeader read(FileChannel channel) throws IOException {
+        try (Metrics.Sample sample = Metrics.start(Metrics.Stage.HEADER_PARSE)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(MAX_HEADER_SIZE, size));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) {
+                    break;
+                }
+            }
+            sample.addBytes(buffer.position());
+            BmpHeader header = parse(buffer, size);
+            header.checkPixelDataFits(size);
+            return header;
+        }
+    }
+
+    /**
+     * Parses a header from a buffer holding at least the file header and DIB header,
+     * starting at absolute index 0. The buffer's position, limit and byte order are not modified.
+     *
+     * @param buffer   the buffer holding the start of the file.
+     * @param fileSize the actual size of the file, used instead of the possibly unreliable {@code bfSize}.
+     * @return the parsed header.
+     * @throws IOException if the data is not a supported, uncompressed BMP, or its rows are too large
+     *                     to address.
+     */
+    static BmpHeader parse(ByteBuffer buffer, long fileSize) throws IOException {
+        ByteBuffer data = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int available = data.limit();
+        if (available < FILE_HEADER_SIZE + 4 || data.get(0) != 'B' || data.get(1) != 'M') {
+            throw new IOException("Not a BMP file");
+        }
+
+        long pixelDataOffset = Integer.toUnsignedLong(data.getInt(10));
+        DibHeaderType type = DibHeaderType.fromSize(data.getInt(FILE_HEADER_SIZE));
+        if (available < FILE_HEADER_SIZE + type.getSize()) {
+            throw new IOException("Truncated BMP header");
+        }
+
+        int width;
+        int rawHeight;
+        int bitCount;
+        int compression = BI_RGB;
+        if (type == DibHeaderType.CORE) {
+            width = Short.toUnsignedInt(data.getShort(18));
+            rawHeight = Short.toUnsignedInt(data.getShort(20));
+            bitCount = Short.toUnsignedInt(data.getShort(24));
+        } else {
+            width = data.getInt(18);
+            rawHeight = data.getInt(22);
+            bitCount = Short.toUnsignedInt(data.getShort(28));
+            if (type != DibHeaderType.OS2_V2_SHORT) {
+                compression = data.getInt(30);
+            }
+        }
+
+        if (width <= 0 || rawHeight == 0 || rawHeight == Integer.MIN_VALUE) {
+            throw new IOException("Invalid BMP dimensions: " + width + "x" + rawHeight);
+        }
+        if (bitCount != 1 && bitCount != 4 && bitCount != 8 && bitCount != 16 && bitCount != 24 && bitCount != 32) {
+            throw new IOException("Unsupported BMP bit depth: " + bitCount);
+        }
+        if (compression != BI_RGB && compression != BI_BITFIELDS && compression != BI_ALPHABITFIELDS) {
+            throw new IOException("Compressed BMP files are not supported (compression " + compression + ")");
+        }
+        if (pixelDataOffset < FILE_HEADER_SIZE + type.getSize()) {
+            throw new IOException("Pixel data offset overlaps the header: " + pixelDataOffset);
+        }
+        // Rows are addressed with int offsets; bounding the row keeps stride * height well within a long
+        long rowStride = ((long) bitCount * width + 31) / 32 * 4;
+        if (rowStride > Integer.MAX_VALUE) {
+            throw new IOException("BMP rows are too large: " + width + " pixels of " + bitCount + " bits");
+        }
+
+        boolean topDown = rawHeight < 0;
+        return new BmpHeader(fileSize, pixelDataOffset, type, width, Math.abs(rawHeight), topDown, bitCount, compression);
+    }
+
+    private void checkPixelDataFits(long actualSize) throws IOException {
+        if (pixelDataOffset + getPixelDataLength() > actualSize) {
+            throw new IOException("BMP pixel data is truncated: expected " + getPixelDataLength()
+                    + " bytes at offset " + pixelDataOffset + ", file has " + actualSize + " bytes");
+        }
+    }
+
+    /**
+     * Maps a carrier byte index to its absolute offset in the file, skipping row padding.
+     *
+     * @param index the carrier byte index, between 0 and {@link #getCarrierByteCount()} (exclusive).
+     * @return the absolute file offset of that carrier byte.
+     */
+    public long carrierOffset(long index) {
+        long row = index / pixelBytesPerRow;
+        long column = index - row * pixelBytesPerRow;
+        return pixelDataOffset + row * rowStride + column;
+    }
+
+    /**
+     * Returns the number of bytes that hold pixel data and can carry payload bits.
+     *
+     * @return the carrier byte count (pixel bytes per row times height, excluding padding).
+     */
+    public long getCarrierByteCount() {
+        return (long) pixelBytesPerRow * height;
+    }
+
+    /**
+     * Returns the total length of the pixel array, including row padding.
+     *
+     * @return the pixel array length in bytes.
+     */
+    public long getPixelDataLength() {
+        return (long) rowStride * height;
+    }
+
+    /**
+     * Returns the file size the header was parsed against.
+     *
+     * @return the file size in bytes.
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Returns the offset of the pixel array from the start of the file ({@code bfOffBits}).
+     *
+     * @return the pixel data offset in bytes.
+     */
+    public long getPixelDataOffset() {
+        return pixelDataOffset;
+    }
+
+    /**
+     * Returns the variant of the DIB header.
+     *
+     * @return the DIB header type.
+     */
+    public DibHeaderType getDibHeaderType() {
+        return dibHeaderType;
+    }
+
+    /**
+     * Returns the image width in pixels.
+     *
+     * @return the width.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the image height in pixels, always positive.
+     *
+     * @return the height.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns whether the first row in the file is the top row of the image.
+     *
+     * @return {@code true} for top-down bitmaps, {@code false} for the usual bottom-up layout.
+     */
+    public boolean isTopDown() {
+        return topDown;
+    }
+
+    /**
+     * Returns the number of bits per pixel.
+     *
+     * @return the bit depth (1, 4, 8, 16, 24 or 32).
+     */
+    public int getBitCount() {
+        return bitCount;
+    }
+
+    /**
+     * Returns the compression method from the DIB header.
+     *
+     * @return {@link #BI_RGB}, {@link #BI_BITFIELDS} or {@link #BI_ALPHABITFIELDS}.
+     */
+    public int getCompression() {
+        return compression;
+    }
+
+    /**
+     * Returns the number of bytes per pixel, or 1 for formats that pack several pixels into a byte.
+     *
+     * @return the bytes per pixel (1, 2, 3 or 4).
+     */
+    public int getBytesPerPixel() {
+        return Math.max(1, bitCount / 8);
+    }
+
+    /**
+     * Returns the length of one stored row, including padding to a 4-byte boundary.
+     *
+     * @return the row stride in bytes.
+     */
+    public int getRowStride() {
+        return rowStride;
+    }
+
+    /**
+     * Returns the number of bytes in one row that hold pixel data.
+     *
+     * @return the pixel bytes per row.
+     */
+    public int getPixelBytesPerRow() {
+        return pixelBytesPerRow;
+    }
+
+    /**
+     * Returns the number of padding bytes at the end of each row.
+     *
+     * @return the row padding in bytes (0 to 3).
+     */
+    public int getRowPadding() {
+        return rowStride - pixelBytesPerRow;
+    }
+}
@@ -0,0 +1,135 @@
+package org.app;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Quick look at a BMP file: dimensions, bit depth, capacity and whether it carries a payload,
+ * without decoding the image.
+ * <p>
+ * A probe reads the BMP header and the pixel rows holding the {@link PayloadFrame} header, usually
+ * a single row, so its cost does not depend on the image size. It is meant for triaging large
+ * numbers of files before deciding which ones to embed into or extract from. Only framed payloads
+ * are detected; images written in the legacy null-terminated format report no payload.
+ * </p>
+ */
+public class BmpProbe {
+
+    private final BmpHeader header;
+    private final PayloadFrame frame;
+
+    private BmpProbe(BmpHeader header, PayloadFrame frame) {
+        this.header = header;
+        this.frame = frame;
+    }
+
+    /**
+     * Probes a BMP file.
+     *
+     * @param file the file to probe.
+     * @return the probe result.
+     * @throws IOException if the file cannot be read, is not a supported BMP, or starts with a payload
+     *                     header of an unsupported version.
+     */
+    public static BmpProbe probe(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return probe(channel);
+        }
+    }
+
+    /**
+     * Probes a BMP file through an open channel. The channel position is not modified.
+     *
+     * @param channel the channel to read from, starting at offset 0.
+     * @return the probe result.
+     * @throws IOException if the channel cannot be read, does not hold a supported BMP, or starts with
+     *                     a payload header of an unsupported version.
+     */
+    public static BmpProbe probe(FileChannel channel) throws IOException {
+        BmpHeader header = BmpHeader.read(channel);
+
+        // Only the rows holding the frame header: it is written one bit per carrier byte
+        long headerCarrierBytes = PayloadFrame.HEADER_SIZE * 8L;
+        int rows = (int) Math.min(header.getHeight(),
+                (headerCarrierBytes + header.getPixelBytesPerRow() - 1) / header.getPixelBytesPerRow());
+        ByteBuffer buffer = ByteBuffer.allocate(rows * header.getRowStride()).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, header.getPixelDataOffset() + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file while reading BMP pixel data");
+            }
+        }
+
+        LsbCodec.Decoder decoder = new LsbCodec.Decoder(header.getBytesPerPixel(), 4, reached -> {
+            if (reached.size() < PayloadFrame.HEADER_SIZE && PayloadFrame.hasMagic(reached.buffer())) {
+                reached.extendLimit(PayloadFrame.HEADER_SIZE);
+            } else {
+                reached.stop();
+            }
+        });
+        ImageCryptoTools.processRows(buffer, header, decoder);
+
+        PayloadFrame frame = decoder.size() == PayloadFrame.HEADER_SIZE ? PayloadFrame.parse(decoder.buffer()) : null;
+        return new BmpProbe(header, frame);
+    }
+
+    /**
+     * Returns the parsed BMP header, with the dimensions and bit depth.
+     *
+     * @return the BMP header.
+     */
+    public BmpHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns whether the image is large enough for the application to embed into or extract from.
+     *
+     * @return {@code true} if it has at least {@link AppConstants#MIN_REQUIRED_PIXELS} pixels.
+     */
+    public boolean meetsMinimumSize() {
+        return (long) header.getWidth() * header.getHeight() >= AppConstants.MIN_REQUIRED_PIXELS;
+    }
+
+    /**
+     * Returns how many payload bytes the image can hold in the given mode.
+     *
+     * @param mode the embedding mode.
+     * @return the capacity in bytes, before compression; 0 if the mode does not fit the image.
+     */
+    public int getCapacity(EmbeddingMode mode) {
+        return ImageCryptoTools.getCapacity(header, mode);
+    }
+
+    /**
+     * Returns whether the image starts with a payload header.
+     *
+     * @return {@code true} if a framed payload is present.
+     */
+    public boolean hasPayload() {
+        return frame != null;
+    }
+
+    /**
+     * Returns the payload header, with the stored length, flags and mode.
+     *
+     * @return the payload header, or {@code null} if no payload is present.
+     */
+    public PayloadFrame getFrame() {
+        return frame;
+    }
+
+    /**
+     * Returns the mode the payload was embedded in.
+     *
+     * @return the embedding mode, or {@code null} if no payload is present.
+     * @throws IOException if the header records an invalid mode.
+     */
+    public EmbeddingMode getPayloadMode() throws IOException {
+        return frame == null ? null : EmbeddingMode.fromModeByte(frame.getMode());
+    }
+}
@@ -0,0 +1,202 @@
+package org.app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Chi-square attack over successive windows of the pixel data, to locate where a payload sits.
+ * <p>
+ * The carrier bytes are visited in the order the LSB codec embeds into them (file order, row padding
+ * skipped) and cut into windows of a fixed number of carrier bytes. For each window, the chi-square
+ * test of {@link Steganalysis} is run on the histogram of its byte values, giving one embedding
+ * probability per window. A sequentially embedded payload shows up as a leading run of windows with
+ * a probability close to 1 followed by windows close to 0; {@link #getSuspectLength(double)} returns
+ * the extent of that run, so only that part of the carrier needs to be decoded.
+ * </p>
+ * <p>
+ * The profile is computed in one streaming pass with the row iteration used for extraction:
+ * memory-mapped windows for files, chunked reads for streams. Apart from the curve itself, one value per
+ * window, memory use does not depend on the image size.
+ * </p>
+ */
+public class ChiSquareProfile implements LsbCodec.RunProcessor {
+
+    private final int windowBytes;
+    private final long[] histogram = new long[256];
+    private double[] probabilities = new double[16];
+    private int windowCount;
+    private int windowFill;
+    private long carrierBytes;
+
+    ChiSquareProfile(int windowBytes) {
+        if (windowBytes <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowBytes);
+        }
+        this.windowBytes = windowBytes;
+    }
+
+    /**
+     * Computes the profile of a BMP file with windows of {@link AppConstants#CHI_SQUARE_WINDOW_BYTES}.
+     *
+     * @param file the BMP file.
+     * @return the profile.
+     * @throws IOException if the file cannot be read or is not a supported BMP.
+     */
+    public static ChiSquareProfile of(Path file) throws IOException {
+        return of(file, AppConstants.CHI_SQUARE_WINDOW_BYTES);
+    }
+
+    /**
+     * Computes the profile of a BMP file, mapping its pixel data one window at a time.
+     *
+     * @param file        the BMP file.
+     * @param windowBytes the number of carrier bytes per window.
+     * @return the profile.
+     * @throws IOException              if the file cannot be read or is not a supported BMP.
+     * @throws IllegalArgumentException if the window size is not positive.
+     */
+    public static ChiSquareProfile of(Path file, int windowBytes) throws IOException {
+        ChiSquareProfile profile = new ChiSquareProfile(windowBytes);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            BmpHeader header = BmpHeader.read(channel);
+            ImageCryptoTools.forEachMappedRows(channel, FileChannel.MapMode.READ_ONLY, header, profile);
+        }
+        return profile.finish();
+    }
+
+    /**
+     * Computes the profile of a BMP read from a stream, one chunk of rows at a time
+     * ({@link AppConstants#STREAM_CHUNK_BYTES}). The stream is not closed.
+     *
+     * @param carrier     the BMP to read.
+     * @param windowBytes the number of carrier bytes per window.
+     * @return the profile.
+     * @throws IOException              if the stream fails or does not hold a supported BMP.
+     * @throws IllegalArgumentException if the window size is not positive.
+     */
+    public static ChiSquareProfile of(InputStream carrier, int windowBytes) throws IOException {
+        ChiSquareProfile profile = new ChiSquareProfile(windowBytes);
+        ReadableByteChannel channel = Channels.newChannel(carrier);
+        BmpHeader header = ImageStreamTools.skipHeaders(channel);
+        ImageStreamTools.processRows(channel, header, profile);
+        return profile.finish();
+    }
+
+    /**
+     * Adds a run of carrier bytes to the current window, closing windows as they fill up.
+     *
+     * @param carrier the buffer holding the carrier bytes.
+     * @param from    the index of the first carrier byte in the run.
+     * @param length  the number of carrier bytes in the run.
+     */
+    @Override
+    public void process(ByteBuffer carrier, int from, int length) {
+        int end = from + length;
+        while (from < end) {
+            int count = Math.min(end - from, windowBytes - windowFill);
+            for (int i = from; i < from + count; i++) {
+                histogram[carrier.get(i) & 0xFF]++;
+            }
+            from += count;
+            windowFill += count;
+            carrierBytes += count;
+            if (windowFill == windowBytes) {
+                closeWindow();
+            }
+        }
+    }
+
+    /**
+     * Never done: every carrier byte belongs to a window.
+     *
+     * @return {@code false}.
+     */
+    @Override
+    public boolean isDone() {
+        return false;
+    }
+
+    /**
+     * Closes the last, partial window if it holds any carrier bytes.
+     */
+    ChiSquareProfile finish() {
+        if (windowFill > 0) {
+            closeWindow();
+        }
+        return this;
+    }
+
+    private void closeWindow() {
+        if (windowCount == probabilities.length) {
+            probabilities = Arrays.copyOf(probabilities, windowCount * 2);
+        }
+        probabilities[windowCount++] = Steganalysis.chiSquareTest(histogram, 0, histogram.length)[2];
+        Arrays.fill(histogram, 0);
+        windowFill = 0;
+    }
+
+    /**
+     * Returns the number of carrier bytes per window.
+     *
+     * @return the window size; only the last window may be shorter.
+     */
+    public int getWindowBytes() {
+        return windowBytes;
+    }
+
+    /**
+     * Returns the number of windows.
+     *
+     * @return the window count.
+     */
+    public int getWindowCount() {
+        return windowCount;
+    }
+
+    /**
+     * Returns the chi-square embedding probability of one window.
+     *
+     * @param window the window number, starting at the first carrier byte.
+     * @return a probability between 0 and 1; close to 1 when the window's LSBs carry payload.
+     */
+    public double getProbability(int window) {
+        if (window < 0 || window >= windowCount) {
+            throw new IndexOutOfBoundsException("Window " + window + " out of " + windowCount);
+        }
+        return probabilities[window];
+    }
+
+    /**
+     * Returns the embedding probability of every window, in carrier order.
+     *
+     * @return a new array with one probability per window.
+     */
+    public double[] getProbabilities() {
+        return Arrays.copyOf(probabilities, windowCount);
+    }
+
+    /**
+     * Returns the extent of the leading run of windows whose probability reaches a threshold, where
+     * a sequentially embedded payload is stored.
+     *
+     * @param threshold the probability from which a window is considered embedded, such as
+     *                  {@link AppConstants#CHI_SQUARE_PROBABILITY_THRESHOLD}.
+     * @return the number of carrier bytes from the start of the pixel data to the end of the run;
+     *         0 if the first window is below the threshold. With {@code n} LSBs in every byte, the run
+     *         holds at most {@code length * n / 8} payload bytes.
+     */
+    public long getSuspectLength(double threshold) {
+        int windows = 0;
+        while (windows < windowCount && probabilities[windows] >= threshold) {
+            windows++;
+        }
+        return Math.min((long) windows * windowBytes, carrierBytes);
+    }
+}
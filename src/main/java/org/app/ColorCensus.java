@@ -0,0 +1,185 @@
+package org.app;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Exact colour census of an image: the number of distinct 24-bit RGB colours and a 256-bin
+ * histogram of each channel.
+ * <p>
+ * Distinct colours are recorded in a bitset with one bit per possible colour (2<sup>24</sup> bits,
+ * 2 MiB), so counting costs one bit operation per pixel whatever the palette. The bitset is
+ * allocated once per instance and cleared before each image, so an instance can be reused across a
+ * batch of images without reallocating it. Alpha is ignored.
+ * </p>
+ * <p>
+ * Pixels are read in bulk, a block of rows at a time. Large images are scanned in parallel bands
+ * (see {@link PixelBands}); the bands then set bits with atomic updates, while small images are
+ * scanned on the calling thread with plain ones. An instance holds the results of the last image
+ * counted and must not be used by several threads at once.
+ * </p>
+ */
+public class ColorCensus {
+
+    /** Number of distinct 24-bit colours. */
+    public static final int COLOR_SPACE_SIZE = 1 << 24;
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] seen = new long[COLOR_SPACE_SIZE / Long.SIZE];
+    private int[] histograms = new int[3 * 256];
+    private int uniqueColors;
+    private long pixelCount;
+
+    /**
+     * Counts the colours of an image, replacing the results of the previous one.
+     *
+     * @param image the image to analyze.
+     * @return this census.
+     */
+    public ColorCensus count(Image image) {
+        return count(image, PixelBands.PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Counts the colours of an image, scanning row bands in parallel when the image has at least
+     * {@code parallelThreshold} pixels, and replacing the results of the previous one.
+     *
+     * @param image             the image to analyze.
+     * @param parallelThreshold the pixel count below which the image is scanned on the calling thread.
+     * @return this census.
+     */
+    public ColorCensus count(Image image, int parallelThreshold) {
+        try (Metrics.Sample sample = Metrics.start(Metrics.Stage.STATISTICS)) {
+            int width = (int) image.getWidth();
+            int height = (int) image.getHeight();
+            boolean concurrent = (long) width * height >= parallelThreshold;
+            sample.addBytes(4L * width * height);
+
+            Arrays.fill(seen, 0L);
+            PixelReader reader = image.getPixelReader();
+            histograms = PixelBands.reduceBands(width, height, parallelThreshold,
+                    (fromRow, toRow) -> scan(reader, width, fromRow, toRow, concurrent),
+                    ColorCensus::merge);
+
+            int unique = 0;
+            for (long word : seen) {
+                unique += Long.bitCount(word);
+            }
+            uniqueColors = unique;
+            pixelCount = (long) width * height;
+            return this;
+        }
+    }
+
+    /**
+     * Returns the number of distinct colours in the last image counted.
+     *
+     * @return the exact number of distinct 24-bit colours.
+     */
+    public int getUniqueColors() {
+        return uniqueColors;
+    }
+
+    /**
+     * Returns the number of pixels in the last image counted.
+     *
+     * @return the pixel count.
+     */
+    public long getPixelCount() {
+        return pixelCount;
+    }
+
+    /**
+     * Returns the histogram of the red channel of the last image counted.
+     *
+     * @return a new 256-bin histogram.
+     */
+    public int[] getRedHistogram() {
+        return Arrays.copyOfRange(histograms, 0, 256);
+    }
+
+    /**
+     * Returns the histogram of the green channel of the last image counted.
+     *
+     * @return a new 256-bin histogram.
+     */
+    public int[] getGreenHistogram() {
+        return Arrays.copyOfRange(histograms, 256, 512);
+    }
+
+    /**
+     * Returns the histogram of the blue channel of the last image counted.
+     *
+     * @return a new 256-bin histogram.
+     */
+    public int[] getBlueHistogram() {
+        return Arrays.copyOfRange(histograms, 512, 768);
+    }
+
+    /**
+     * Returns the mean value of a channel of the last image counted.
+     *
+     * @param channel 0 for red, 1 for green, 2 for blue.
+     * @return the mean channel value, between 0 and 255; 0 for an empty image.
+     */
+    public double getChannelMean(int channel) {
+        if (channel < 0 || channel > 2) {
+            throw new IllegalArgumentException("Channel must be 0, 1 or 2: " + channel);
+        }
+        if (pixelCount == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int value = 0; value < 256; value++) {
+            sum += (long) value * histograms[channel * 256 + value];
+        }
+        return (double) sum / pixelCount;
+    }
+
+    /**
+     * Marks the colours of a band of rows in the bitset and returns the band's channel histograms,
+     * reading blocks of up to {@link AppConstants#PARALLEL_BAND_PIXELS} pixels at once.
+     *
+     * @param concurrent whether other bands are being scanned at the same time.
+     */
+    private int[] scan(PixelReader reader, int width, int fromRow, int toRow, boolean concurrent) {
+        int[] bandHistograms = new int[3 * 256];
+        int rowsPerBlock = Math.max(1, Math.min(toRow - fromRow, AppConstants.PARALLEL_BAND_PIXELS / Math.max(1, width)));
+        int[] pixels = new int[rowsPerBlock * width];
+        for (int y = fromRow; y < toRow; y += rowsPerBlock) {
+            int rows = Math.min(rowsPerBlock, toRow - y);
+            int length = rows * width;
+            reader.getPixels(0, y, width, rows, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+            for (int i = 0; i < length; i++) {
+                int rgb = pixels[i] & 0xFFFFFF;
+                bandHistograms[rgb >>> 16]++;
+                bandHistograms[256 + ((rgb >>> 8) & 0xFF)]++;
+                bandHistograms[512 + (rgb & 0xFF)]++;
+
+                int word = rgb >>> 6;
+                long bit = 1L << rgb;
+                if (concurrent) {
+                    if (((long) WORDS.getOpaque(seen, word) & bit) == 0) {
+                        WORDS.getAndBitwiseOr(seen, word, bit);
+                    }
+                } else {
+                    seen[word] |= bit;
+                }
+            }
+        }
+        return bandHistograms;
+    }
+
+    private static int[] merge(int[] left, int[] right) {
+        for (int i = 0; i < left.length; i++) {
+            left[i] += right[i];
+        }
+        return left;
+    }
+}
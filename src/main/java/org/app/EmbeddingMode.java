@@ -0,0 +1,278 @@
+package org.app;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Describes how payload bits are distributed over carrier bytes: how many least significant bits
+ * of each byte are used (1 to 4) and, for 24- and 32-bit images, which colour channels carry data.
+ * <p>
+ * More bits per channel means fewer carrier bytes are read and written per payload byte, at the
+ * cost of a more visible change to the image. Channels are numbered in BMP byte order:
+ * blue, green, red and, for 32-bit images, alpha.
+ * </p>
+ * <p>
+ * A <em>scattered</em> mode spreads the payload over the image in a key-seeded pseudo-random order
+ * (see {@link ScatteredCarrier}) instead of filling it from the first row, so the changed bytes do not
+ * form a visible block in the LSB plane. It requires random access to the carrier.
+ * </p>
+ * <p>
+ * The mode is stored in the payload frame header as a single byte (bits 0-2: bits per channel,
+ * bit 3: scattered, high nibble: channel mask, 0 meaning all channels), so extraction detects it
+ * automatically. The frame header itself is always written one bit per byte over all channels.
+ * </p>
+ */
+public class EmbeddingMode {
+
+    /** Channel mask bit for blue, the first byte of a 24- or 32-bit pixel. */
+    public static final int CHANNEL_BLUE = 1;
+
+    /** Channel mask bit for green, the second byte of a 24- or 32-bit pixel. */
+    public static final int CHANNEL_GREEN = 1 << 1;
+
+    /** Channel mask bit for red, the third byte of a 24- or 32-bit pixel. */
+    public static final int CHANNEL_RED = 1 << 2;
+
+    /** Channel mask bit for alpha, the fourth byte of a 32-bit pixel. */
+    public static final int CHANNEL_ALPHA = 1 << 3;
+
+    /** Channel mask value meaning every carrier byte is used, whatever the pixel format. */
+    public static final int ALL_CHANNELS = 0;
+
+    /** Maximum number of least significant bits per channel. */
+    public static final int MAX_BITS_PER_CHANNEL = 4;
+
+    /** One bit per byte over all channels, the format written by earlier versions. */
+    public static final EmbeddingMode DEFAULT = new EmbeddingMode(1, ALL_CHANNELS);
+
+    private final int bitsPerChannel;
+    private final int channelMask;
+    private final boolean scattered;
+
+    /**
+     * Creates a sequential embedding mode.
+     *
+     * @param bitsPerChannel the number of least significant bits used per carrier byte (1 to 4).
+     * @param channelMask    a combination of the {@code CHANNEL_*} bits, or {@link #ALL_CHANNELS}.
+     * @throws IllegalArgumentException if either value is out of range.
+     */
+    public EmbeddingMode(int bitsPerChannel, int channelMask) {
+        this(bitsPerChannel, channelMask, false);
+    }
+
+    /**
+     * Creates an embedding mode.
+     *
+     * @param bitsPerChannel the number of least significant bits used per carrier byte (1 to 4).
+     * @param channelMask    a combination of the {@code CHANNEL_*} bits, or {@link #ALL_CHANNELS}.
+     * @param scattered      whether the payload is spread over the image in a key-seeded order.
+     * @throws IllegalArgumentException if either value is out of range.
+     */
+    public EmbeddingMode(int bitsPerChannel, int channelMask, boolean scattered) {
+        if (bitsPerChannel < 1 || bitsPerChannel > MAX_BITS_PER_CHANNEL) {
+            throw new IllegalArgumentException("Bits per channel must be between 1 and "
+                    + MAX_BITS_PER_CHANNEL + ": " + bitsPerChannel);
+        }
+        if (channelMask < 0 || channelMask > 0x0F) {
+            throw new IllegalArgumentException("Invalid channel mask: " + channelMask);
+        }
+        this.bitsPerChannel = bitsPerChannel;
+        this.channelMask = channelMask;
+        this.scattered = scattered;
+    }
+
+    /**
+     * Parses a channel selection such as {@code "RGB"}, {@code "R"} or {@code "GB"}.
+     * {@code "ALL"} selects every carrier byte.
+     *
+     * @param channels the channel letters (R, G, B, A) in any order and case.
+     * @return the corresponding channel mask.
+     * @throws IllegalArgumentException if the string contains anything else.
+     */
+    public static int parseChannels(String channels) {
+        String normalized = channels.trim().toUpperCase(Locale.ROOT);
+        if (normalized.equals("ALL")) {
+            return ALL_CHANNELS;
+        }
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("No channels selected");
+        }
+        int mask = 0;
+        for (char c : normalized.toCharArray()) {
+            mask |= switch (c) {
+                case 'B' -> CHANNEL_BLUE;
+                case 'G' -> CHANNEL_GREEN;
+                case 'R' -> CHANNEL_RED;
+                case 'A' -> CHANNEL_ALPHA;
+                default -> throw new IllegalArgumentException("Unknown channel: " + c);
+            };
+        }
+        return mask;
+    }
+
+    /**
+     * Decodes a mode from the byte stored in a payload frame header.
+     *
+     * @param modeByte the stored value; 0 denotes {@link #DEFAULT}.
+     * @return the decoded mode.
+     * @throws IOException if the byte does not describe a valid mode.
+     */
+    public static EmbeddingMode fromModeByte(int modeByte) throws IOException {
+        if (modeByte == 0) {
+            return DEFAULT;
+        }
+        int bits = modeByte & 0x07;
+        if (bits < 1 || bits > MAX_BITS_PER_CHANNEL) {
+            throw new IOException("Invalid embedding mode: " + modeByte);
+        }
+        return new EmbeddingMode(bits, (modeByte >>> 4) & 0x0F, (modeByte & 0x08) != 0);
+    }
+
+    /**
+     * Encodes this mode as the byte stored in a payload frame header.
+     *
+     * @return the mode byte; 0 for {@link #DEFAULT}, so default frames are unchanged.
+     */
+    public int toModeByte() {
+        return equals(DEFAULT) ? 0 : (channelMask << 4) | (scattered ? 0x08 : 0) | bitsPerChannel;
+    }
+
+    /**
+     * Checks that this mode can be used with the given image.
+     *
+     * @param header the carrier's BMP header.
+     * @throws IOException if channels are selected on an image that is not 24- or 32-bit,
+     *                     or alpha is selected on an image without an alpha byte.
+     */
+    public void validateFor(BmpHeader header) throws IOException {
+        if (usesAllChannels()) {
+            return;
+        }
+        int bitCount = header.getBitCount();
+        if (bitCount != 24 && bitCount != 32) {
+            throw new IOException("Channel selection requires a 24- or 32-bit image, found " + bitCount + "-bit");
+        }
+        if ((channelMask & CHANNEL_ALPHA) != 0 && bitCount != 32) {
+            throw new IOException("Alpha channel selected but the image has no alpha byte");
+        }
+    }
+
+    /**
+     * Returns the number of payload bytes an image can hold in this mode, after the frame header.
+     *
+     * @param header the carrier's BMP header.
+     * @return the capacity in bytes, or 0 if the image is too small or the mode does not fit the image.
+     */
+    public long getCapacity(BmpHeader header) {
+        try {
+            validateFor(header);
+        } catch (IOException e) {
+            return 0;
+        }
+
+        if (scattered) {
+            return ScatteredCarrier.getSlotCount(header, this) * bitsPerChannel / 8;
+        }
+
+        long headerCarrierBytes = PayloadFrame.HEADER_SIZE * 8L;
+        long bodyCarrierBytes;
+        if (usesAllChannels()) {
+            bodyCarrierBytes = header.getCarrierByteCount() - headerCarrierBytes;
+        } else {
+            // The body starts at the first pixel boundary after the frame header
+            int bytesPerPixel = header.getBytesPerPixel();
+            long headerPixels = (headerCarrierBytes + bytesPerPixel - 1) / bytesPerPixel;
+            long pixels = (long) header.getWidth() * header.getHeight() - headerPixels;
+            bodyCarrierBytes = pixels * Integer.bitCount(channelMask);
+        }
+        return Math.max(0, bodyCarrierBytes * bitsPerChannel / 8);
+    }
+
+    /**
+     * Returns whether the carrier byte at the given position within a pixel carries payload bits.
+     *
+     * @param channel the byte position within the pixel (0 = blue, 1 = green, 2 = red, 3 = alpha).
+     * @return {@code true} if the channel is selected.
+     */
+    public boolean isChannelSelected(int channel) {
+        return channelMask == ALL_CHANNELS || (channelMask & (1 << channel)) != 0;
+    }
+
+    /**
+     * Returns whether every carrier byte is used regardless of its channel.
+     *
+     * @return {@code true} for {@link #ALL_CHANNELS}.
+     */
+    public boolean usesAllChannels() {
+        return channelMask == ALL_CHANNELS;
+    }
+
+    /**
+     * Returns the number of colour channels used out of the given ones.
+     *
+     * @param availableChannels the number of channels per pixel (e.g. 3 for RGB).
+     * @return the number of selected channels.
+     */
+    public int countChannels(int availableChannels) {
+        if (usesAllChannels()) {
+            return availableChannels;
+        }
+        return Integer.bitCount(channelMask & ((1 << availableChannels) - 1));
+    }
+
+    /**
+     * Returns whether the payload is spread over the image in a key-seeded order.
+     *
+     * @return {@code true} for scattered embedding, {@code false} for sequential embedding.
+     */
+    public boolean isScattered() {
+        return scattered;
+    }
+
+    /**
+     * Returns the number of least significant bits used per carrier byte.
+     *
+     * @return the bits per channel (1 to 4).
+     */
+    public int getBitsPerChannel() {
+        return bitsPerChannel;
+    }
+
+    /**
+     * Returns the channel mask.
+     *
+     * @return a combination of the {@code CHANNEL_*} bits, or {@link #ALL_CHANNELS}.
+     */
+    public int getChannelMask() {
+        return channelMask;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof EmbeddingMode mode
+                && mode.bitsPerChannel == bitsPerChannel && mode.channelMask == channelMask
+                && mode.scattered == scattered;
+    }
+
+    @Override
+    public int hashCode() {
+        return (bitsPerChannel * 31 + channelMask) * 2 + (scattered ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder channels = new StringBuilder();
+        if (usesAllChannels()) {
+            channels.append("all channels");
+        } else {
+            String letters = "BGRA";
+            for (int channel : new int[]{2, 1, 0, 3}) {
+                if ((channelMask & (1 << channel)) != 0) {
+                    channels.append(letters.charAt(channel));
+                }
+            }
+        }
+        return bitsPerChannel + (bitsPerChannel == 1 ? " LSB, " : " LSBs, ") + channels
+                + (scattered ? ", scattered" : "");
+    }
+}
@@ -1,12 +1,19 @@
 package org.app;
 
 import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.PixelReader;
-import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
-import javafx.scene.paint.Color;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * Utility class for performing cryptographic operations on images,
@@ -14,6 +21,66 @@ import java.io.*;
  */
 public class ImageCryptoTools {
 
+    /**
+     * Offset at which the null-terminated format, used before payload framing was introduced,
+     * started writing bits: the size of a BMP file header plus a BITMAPINFOHEADER.
+     */
+    private static final int LEGACY_DATA_OFFSET = 54;
+
+    /**
+     * Stores visual attack results in a {@link ResultCache}. On disk, each pixel is reduced to its
+     * three channel bits, one byte per pixel, and deflated.
+     */
+    static final ResultCache.Codec<Image> LSB_PLANES_CODEC = new ResultCache.Codec<>() {
+        @Override
+        public long weight(Image value) {
+            return 64 + 4L * (long) value.getWidth() * (long) value.getHeight();
+        }
+
+        @Override
+        public byte[] encode(Image value) throws IOException {
+            int width = (int) value.getWidth();
+            int height = (int) value.getHeight();
+            int[] row = new int[width];
+            byte[] bits = new byte[width];
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            new DataOutputStream(output).writeLong((long) width << 32 | height);
+            try (DeflaterOutputStream deflater = new DeflaterOutputStream(output)) {
+                for (int y = 0; y < height; y++) {
+                    value.getPixelReader().getPixels(0, y, width, 1, PixelFormat.getIntArgbInstance(), row, 0, width);
+                    for (int x = 0; x < width; x++) {
+                        bits[x] = (byte) ((row[x] >>> 14 & 4) | (row[x] >>> 7 & 2) | (row[x] & 1));
+                    }
+                    deflater.write(bits);
+                }
+            }
+            return output.toByteArray();
+        }
+
+        @Override
+        public Image decode(byte[] data) throws IOException {
+            try (DataInputStream input = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data, 8, data.length - 8)))) {
+                long size = ByteBuffer.wrap(data).getLong();
+                int width = (int) (size >>> 32);
+                int height = (int) size;
+                if (width <= 0 || height <= 0) {
+                    throw new IOException("Invalid cached LSB planes");
+                }
+                byte[] bits = new byte[width];
+                int[] row = new int[width];
+                WritableImage image = new WritableImage(width, height);
+                for (int y = 0; y < height; y++) {
+                    input.readFully(bits);
+                    for (int x = 0; x < width; x++) {
+                        row[x] = 0xFF000000 | ((bits[x] & 4) << 14 | (bits[x] & 2) << 7 | (bits[x] & 1)) * 0xFF;
+                    }
+                    image.getPixelWriter().setPixels(0, y, width, 1, PixelFormat.getIntArgbInstance(), row, 0, width);
+                }
+                return image;
+            }
+        }
+    };
+
     /**
      * Applies a visual attack (LSB Analysis) to the given image.
      * This method creates a new image where each pixel reflects the least significant bit
@@ -24,96 +91,504 @@ public class ImageCryptoTools {
      * @throws IllegalArgumentException if the image dimensions are invalid (width or height <= 0).
      */
     public static Image performVisualAttack(Image image) {
-        // Check if the image dimensions are valid
-        int width = (int) image.getWidth();
-        int height = (int) image.getHeight();
+        return performVisualAttack(image, PixelBands.PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Applies a visual attack (LSB Analysis) to the given image, processing row bands in parallel
+     * when the image has at least {@code parallelThreshold} pixels.
+     *
+     * @param image             the input image to apply the visual attack on.
+     * @param parallelThreshold the pixel count below which the image is processed on the calling thread.
+     * @return a new Image object with the results of the visual attack.
+     * @throws IllegalArgumentException if the image dimensions are invalid (width or height <= 0).
+     * @see PixelBands
+     */
+    public static Image performVisualAttack(Image image, int parallelThreshold) {
+        try (Metrics.Sample sample = Metrics.start(Metrics.Stage.VISUAL_ATTACK)) {
+            // Check if the image dimensions are valid
+            int width = (int) image.getWidth();
+            int height = (int) image.getHeight();
 
-        if (width <= 0 || height <= 0) {
-            throw new IllegalArgumentException("Image dimensions must be positive (w,h > 0)");
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException("Image dimensions must be positive (w,h > 0)");
+            }
+            sample.addBytes(4L * width * height);
+
+            // Read pixels as packed ARGB integers instead of one Color object per pixel;
+            // each band reads and transforms its own rows of the shared buffer
+            int[] pixels = new int[width * height];
+            PixelReader reader = image.getPixelReader();
+            PixelBands.forEachBand(width, height, parallelThreshold, (fromRow, toRow) -> {
+                int offset = fromRow * width;
+                reader.getPixels(0, fromRow, width, toRow - fromRow, PixelFormat.getIntArgbInstance(), pixels, offset, width);
+                lsbPlanes(pixels, offset, toRow * width);
+            });
+
+            WritableImage attackedImage = new WritableImage(width, height);
+            attackedImage.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+
+            return attackedImage;
         }
+    }
 
-        PixelReader reader = image.getPixelReader();
-        WritableImage attackedImage = new WritableImage(width, height);
-        PixelWriter writer = attackedImage.getPixelWriter();
+    /**
+     * Replaces each packed ARGB pixel in a range with the LSB planes of its colour channels.
+     * Keeping only the LSB of each channel and multiplying by 0xFF turns every channel into
+     * 0 (black) or 255 (white) without carries between bytes; alpha becomes opaque.
+     *
+     * @param pixels the ARGB pixels, modified in place.
+     * @param from   the index of the first pixel.
+     * @param to     the index after the last pixel.
+     */
+    static void lsbPlanes(int[] pixels, int from, int to) {
+        for (int i = from; i < to; i++) {
+            pixels[i] = 0xFF000000 | (pixels[i] & 0x010101) * 0xFF;
+        }
+    }
+
+    /**
+     * Extracts a text message embedded in the least significant bits (LSBs) of an image byte array.
+     * <p>
+     * Framed payloads are decoded from pixel bytes only. If the image carries no payload header,
+     * the method falls back to the older null-terminated format for compatibility with images
+     * produced by earlier versions of the application.
+     * </p>
+     *
+     * @param imageBytes the byte array representing the image data.
+     * @return the extracted string message.
+     * @throws IOException if the data is not a supported BMP image or the embedded payload is corrupted.
+     */
+    public static String getString(byte[] imageBytes) throws IOException {
+        byte[] payload = extractPayload(imageBytes);
+        if (payload != null) {
+            return new String(payload);
+        }
+        LsbCodec.NullTerminatedDecoder decoder = new LsbCodec.NullTerminatedDecoder();
+        if (imageBytes.length > LEGACY_DATA_OFFSET) {
+            decoder.process(ByteBuffer.wrap(imageBytes), LEGACY_DATA_OFFSET, imageBytes.length - LEGACY_DATA_OFFSET);
+        }
+        return new String(decoder.toByteArray());
+    }
 
-        // Traverse through all pixels of the image
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                Color color = reader.getColor(x, y);
+    /**
+     * Extracts a framed payload from the least significant bits (LSBs) of an image byte array.
+     * <p>
+     * Only the payload header and the announced number of payload bytes are decoded. An image without
+     * a payload is recognised after decoding the four magic bytes, i.e. 32 carrier bytes.
+     * </p>
+     *
+     * @param imageBytes the byte array representing the image data.
+     * @return the payload bytes, or {@code null} if the image carries no framed payload.
+     * @throws IOException if the data is not a supported BMP image or the payload is truncated or corrupted.
+     */
+    public static byte[] extractPayload(byte[] imageBytes) throws IOException {
+        return extractPayload(imageBytes, null);
+    }
 
-                // Extract the least significant bits of each channel (red, green, blue)
-                int red = (int) (color.getRed() * 255);
-                int green = (int) (color.getGreen() * 255);
-                int blue = (int) (color.getBlue() * 255);
+    /**
+     * Extracts a framed payload from an image byte array, decrypting it if it is encrypted.
+     *
+     * @param imageBytes the byte array representing the image data.
+     * @param cipher     decrypts an encrypted payload; may be {@code null} if no password is known.
+     * @return the payload bytes, or {@code null} if the image carries no framed payload.
+     * @throws IOException if the data is not a supported BMP image, the payload is truncated or corrupted,
+     *                     or it is encrypted and the password is missing or wrong.
+     */
+    public static byte[] extractPayload(byte[] imageBytes, PayloadCipher cipher) throws IOException {
+        try (Metrics.Sample sample = Metrics.start(Metrics.Stage.EXTRACT)) {
+            sample.addBytes(imageBytes.length);
+            BmpHeader header = BmpHeader.parse(imageBytes);
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            try (PayloadFrame.Reader reader = new PayloadFrame.Reader(header, payload, cipher)) {
+                ByteBuffer rows = pixelRows(imageBytes, header);
+                processRows(rows, header, reader.decoder());
+                if (reader.needsRandomAccess()) {
+                    reader.readScattered(new ByteBuffer[]{rows}, header.getHeight());
+                }
+                return reader.finish() < 0 ? null : payload.toByteArray();
+            }
+        }
+    }
 
-                // Extract the least significant bit from each channel (0 or 1)
-                int redLsb = red & 1;
-                int greenLsb = green & 1;
-                int blueLsb = blue & 1;
+    /**
+     * Embeds a byte array into the least significant bits (LSBs) of an image byte array.
+     * The method modifies the provided imageBytes in place to store the payload, preceded by a
+     * {@link PayloadFrame} header. Only pixel bytes are modified: the headers, palette and row
+     * padding are left untouched. Payloads that shrink under Deflate are stored compressed, so
+     * fewer carrier bytes are touched; extraction inflates them transparently.
+     *
+     * @param imageBytes the byte array representing the image data where the payload will be embedded.
+     * @param textBytes  the payload to embed; may contain arbitrary binary data.
+     * @throws IOException if the data is not a supported BMP image or there is insufficient space
+     *                     in the image to embed the payload.
+     */
+    static void embedBytesInImageBytes(byte[] imageBytes, byte[] textBytes) throws IOException {
+        embedBytesInImageBytes(imageBytes, textBytes, EmbeddingMode.DEFAULT);
+    }
 
-                // Apply the least significant bits to the new color:
-                // Each channel will be either 0 (black) or 255 (white)
-                int newRed = redLsb * 255;
-                int newGreen = greenLsb * 255;
-                int newBlue = blueLsb * 255;
+    /**
+     * Embeds a byte array into an image byte array using the given embedding mode.
+     * The mode is recorded in the payload header, so extraction does not need to be told about it.
+     *
+     * @param imageBytes the byte array representing the image data where the payload will be embedded.
+     * @param textBytes  the payload to embed; may contain arbitrary binary data.
+     * @param mode       how many LSBs per channel, and which channels, carry the payload.
+     * @throws IOException if the data is not a supported BMP image, the mode does not fit the image,
+     *                     or there is insufficient space in the image to embed the payload.
+     */
+    public static void embedBytesInImageBytes(byte[] imageBytes, byte[] textBytes, EmbeddingMode mode) throws IOException {
+        embedBytesInImageBytes(imageBytes, textBytes, mode, null);
+    }
 
-                // Write the modified color to the new image
-                writer.setColor(x, y, Color.rgb(newRed, newGreen, newBlue));
+    /**
+     * Embeds a byte array into an image byte array using the given embedding mode, encrypting it first
+     * if a cipher is given.
+     *
+     * @param imageBytes the byte array representing the image data where the payload will be embedded.
+     * @param textBytes  the payload to embed; may contain arbitrary binary data.
+     * @param mode       how many LSBs per channel, and which channels, carry the payload.
+     * @param cipher     encrypts the payload; {@code null} to embed it in the clear.
+     * @throws IOException if the data is not a supported BMP image, the mode does not fit the image,
+     *                     or there is insufficient space in the image to embed the payload.
+     */
+    public static void embedBytesInImageBytes(byte[] imageBytes, byte[] textBytes, EmbeddingMode mode,
+                                              PayloadCipher cipher) throws IOException {
+        try (Metrics.Sample sample = Metrics.start(Metrics.Stage.EMBED)) {
+            sample.addBytes(imageBytes.length);
+            BmpHeader header = BmpHeader.parse(imageBytes);
+            PreparedPayload prepared = prepare(header, textBytes, mode, cipher);
+            ByteBuffer rows = pixelRows(imageBytes, header);
+            processRows(rows, header, prepared.encoder());
+            if (mode.isScattered()) {
+                prepared.writeScattered(header, mode, new ByteBuffer[]{rows}, header.getHeight());
             }
         }
+    }
 
-        return attackedImage;
+    /**
+     * Embeds a payload into a BMP file through memory-mapped I/O, without loading the image into the heap.
+     * <p>
+     * If {@code target} differs from {@code source}, the source is first copied with
+     * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, which lets the
+     * operating system copy the data without passing it through user space. Only the rows that
+     * receive payload bits are then mapped and modified in place, so heap use does not depend on image size.
+     * </p>
+     *
+     * @param source    the carrier BMP file.
+     * @param target    the output file; may be the same as {@code source} to embed in place.
+     * @param textBytes the payload to embed; may contain arbitrary binary data.
+     * @throws IOException if the files cannot be accessed, the carrier is not a supported BMP,
+     *                     or there is insufficient space to embed the payload.
+     */
+    public static void embedBytesInFile(Path source, Path target, byte[] textBytes) throws IOException {
+        embedBytesInFile(source, target, textBytes, EmbeddingMode.DEFAULT);
     }
 
     /**
-     * Extracts a text message embedded in the least significant bits (LSBs) of an image byte array.
-     * The embedded text is expected to be terminated by a null byte.
+     * Embeds a payload into a BMP file through memory-mapped I/O using the given embedding mode.
      *
-     * @param imageBytes the byte array representing the image data.
-     * @return the extracted string message.
+     * @param source    the carrier BMP file.
+     * @param target    the output file; may be the same as {@code source} to embed in place.
+     * @param textBytes the payload to embed; may contain arbitrary binary data.
+     * @param mode      how many LSBs per channel, and which channels, carry the payload.
+     * @throws IOException if the files cannot be accessed, the carrier is not a supported BMP,
+     *                     the mode does not fit the image, or there is insufficient space.
+     * @see #embedBytesInFile(Path, Path, byte[])
      */
-    public static String getString(byte[] imageBytes) {
-        int offset = 54; // BMP header size
-        ByteArrayOutputStream textBytes = new ByteArrayOutputStream();
+    public static void embedBytesInFile(Path source, Path target, byte[] textBytes, EmbeddingMode mode) throws IOException {
+        embedBytesInFile(source, target, textBytes, mode, null);
+    }
 
-        while (offset < imageBytes.length) {
-            byte b = 0;
-            for (int bit = 0; bit < 8; bit++) {
-                b |= (byte) ((imageBytes[offset] & 1) << bit);
-                offset++;
+    /**
+     * Embeds a payload into a BMP file through memory-mapped I/O using the given embedding mode,
+     * encrypting it first if a cipher is given.
+     *
+     * @param source    the carrier BMP file.
+     * @param target    the output file; may be the same as {@code source} to embed in place.
+     * @param textBytes the payload to embed; may contain arbitrary binary data.
+     * @param mode      how many LSBs per channel, and which channels, carry the payload.
+     * @param cipher    encrypts the payload; {@code null} to embed it in the clear.
+     * @throws IOException if the files cannot be accessed, the carrier is not a supported BMP,
+     *                     the mode does not fit the image, or there is insufficient space.
+     */
+    public static void embedBytesInFile(Path source, Path target, byte[] textBytes, EmbeddingMode mode,
+                                        PayloadCipher cipher) throws IOException {
+        try (Metrics.Sample sample = Metrics.start(Metrics.Stage.EMBED)) {
+            // Reject unsupported carriers, modes and oversized payloads before anything is written
+            BmpHeader header = BmpHeader.read(source);
+            sample.addBytes(header.getFileSize());
+            PreparedPayload prepared = prepare(header, textBytes, mode, cipher);
+            if (!Files.exists(target) || !Files.isSameFile(source, target)) {
+                copyFile(source, target);
+            }
+
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                forEachMappedRows(channel, FileChannel.MapMode.READ_WRITE, header, prepared.encoder());
+                if (mode.isScattered()) {
+                    prepared.writeScattered(header, mode, mapRows(channel, FileChannel.MapMode.READ_WRITE, header),
+                            rowsPerWindow(header));
+                }
             }
-            if (b == 0) { // Null byte marks end of text
-                break;
+        }
+    }
+
+    /**
+     * Extracts a framed payload from a BMP file through memory-mapped I/O.
+     * <p>
+     * Pixel data is mapped one window at a time and decoding stops as soon as the payload is complete,
+     * so only the pages that actually hold the payload are read from disk. A file without a payload
+     * is rejected after reading its header and the first pixel row.
+     * </p>
+     *
+     * @param file the BMP file to read.
+     * @return the payload bytes, or {@code null} if the file carries no framed payload.
+     * @throws IOException if the file cannot be read, is not a supported BMP, or the payload is corrupted.
+     */
+    public static byte[] extractPayloadFromFile(Path file) throws IOException {
+        return extractPayloadFromFile(file, (PayloadCipher) null);
+    }
+
+    /**
+     * Extracts a framed payload from a BMP file through memory-mapped I/O, decrypting it if it is encrypted.
+     *
+     * @param file   the BMP file to read.
+     * @param cipher decrypts an encrypted payload; may be {@code null} if no password is known.
+     * @return the payload bytes, or {@code null} if the file carries no framed payload.
+     * @throws IOException if the file cannot be read, is not a supported BMP, the payload is corrupted,
+     *                     or it is encrypted and the password is missing or wrong.
+     */
+    public static byte[] extractPayloadFromFile(Path file, PayloadCipher cipher) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        return extractPayloadFromFile(file, payload, cipher) < 0 ? null : payload.toByteArray();
+    }
+
+    /**
+     * Extracts a framed payload from a BMP file through memory-mapped I/O, writing the payload bytes
+     * to a stream as they are decoded instead of collecting them in memory.
+     * <p>
+     * The checksum is verified at the end: if this method throws, the bytes already written are
+     * incomplete or corrupted and should be discarded.
+     * </p>
+     *
+     * @param file   the BMP file to read.
+     * @param output receives the payload bytes; not closed.
+     * @return the number of payload bytes written, or -1 if the file carries no framed payload.
+     * @throws IOException if the file cannot be read, is not a supported BMP, the payload is corrupted,
+     *                     or writing to the stream fails.
+     */
+    public static long extractPayloadFromFile(Path file, OutputStream output) throws IOException {
+        return extractPayloadFromFile(file, output, null);
+    }
+
+    /**
+     * Extracts a framed payload from a BMP file through memory-mapped I/O into a stream, decrypting
+     * it if it is encrypted. If this method throws, the bytes already written should be discarded.
+     *
+     * @param file   the BMP file to read.
+     * @param output receives the payload bytes; not closed.
+     * @param cipher decrypts an encrypted payload; may be {@code null} if no password is known.
+     * @return the number of payload bytes written, or -1 if the file carries no framed payload.
+     * @throws IOException if the file cannot be read, is not a supported BMP, the payload is corrupted,
+     *                     it is encrypted and the password is missing or wrong, or writing fails.
+     */
+    public static long extractPayloadFromFile(Path file, OutputStream output, PayloadCipher cipher) throws IOException {
+        try (Metrics.Sample sample = Metrics.start(Metrics.Stage.EXTRACT);
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            BmpHeader header = BmpHeader.read(channel);
+            sample.addBytes(header.getFileSize());
+            try (PayloadFrame.Reader reader = new PayloadFrame.Reader(header, output, cipher)) {
+                forEachMappedRows(channel, FileChannel.MapMode.READ_ONLY, header, reader.decoder());
+                if (reader.needsRandomAccess()) {
+                    reader.readScattered(mapRows(channel, FileChannel.MapMode.READ_ONLY, header),
+                            rowsPerWindow(header));
+                }
+                return reader.finish();
             }
-            textBytes.write(b);
         }
+    }
 
-        return textBytes.toString();
+    /**
+     * Extracts a text message from a BMP file through memory-mapped I/O.
+     * Like {@link #getString(byte[])}, it falls back to the older null-terminated format
+     * if the file carries no framed payload.
+     *
+     * @param file the BMP file to read.
+     * @return the extracted string message.
+     * @throws IOException if the file cannot be read, is not a supported BMP, or the payload is corrupted.
+     */
+    public static String extractStringFromFile(Path file) throws IOException {
+        return extractStringFromFile(file, null);
     }
 
     /**
-     * Embeds a byte array (representing text) into the least significant bits (LSBs) of an image byte array.
-     * The method modifies the provided imageBytes in place to store the textBytes.
+     * Extracts a text message from a BMP file, decrypting it if it is encrypted, and falling back to
+     * the older null-terminated format if the file carries no framed payload.
      *
-     * @param imageBytes the byte array representing the image data where the text will be embedded.
-     * @param textBytes  the byte array representing the text to embed.
-     * @throws IOException if there is insufficient space in the image to embed the text.
+     * @param file   the BMP file to read.
+     * @param cipher decrypts an encrypted payload; may be {@code null} if no password is known.
+     * @return the extracted string message.
+     * @throws IOException if the file cannot be read, is not a supported BMP, the payload is corrupted,
+     *                     or it is encrypted and the password is missing or wrong.
      */
-    static void embedBytesInImageBytes(byte[] imageBytes, byte[] textBytes) throws IOException {
-        int offset = 54; // BMP header size
-        for (byte b : textBytes) {
-            for (int bit = 0; bit < 8; bit++) {
-                int lsb = (b >> bit) & 1;
-                imageBytes[offset] = (byte) ((imageBytes[offset] & 0xFE) | lsb);
-                offset++;
+    public static String extractStringFromFile(Path file, PayloadCipher cipher) throws IOException {
+        byte[] payload = extractPayloadFromFile(file, cipher);
+        if (payload != null) {
+            return new String(payload);
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            LsbCodec.NullTerminatedDecoder decoder = new LsbCodec.NullTerminatedDecoder();
+            long size = channel.size();
+            for (long position = LEGACY_DATA_OFFSET; position < size && !decoder.isDone();
+                 position += AppConstants.MAPPED_WINDOW_BYTES) {
+                int length = (int) Math.min(AppConstants.MAPPED_WINDOW_BYTES, size - position);
+                decoder.process(channel.map(FileChannel.MapMode.READ_ONLY, position, length), 0, length);
             }
+            return new String(decoder.toByteArray());
+        }
+    }
+
+    /**
+     * Returns the number of payload bytes that can be embedded into an image with the given header
+     * in the default mode (one bit per byte), taking the payload frame header into account.
+     *
+     * @param header the parsed BMP header of the carrier image.
+     * @return the embedding capacity in bytes, or 0 if the image is too small.
+     */
+    public static int getCapacity(BmpHeader header) {
+        return getCapacity(header, EmbeddingMode.DEFAULT);
+    }
+
+    /**
+     * Returns the number of payload bytes that can be embedded into an image with the given header
+     * in the given mode, taking the payload frame header into account.
+     *
+     * @param header the parsed BMP header of the carrier image.
+     * @param mode   the embedding mode.
+     * @return the embedding capacity in bytes, or 0 if the image is too small or the mode does not fit it.
+     */
+    public static int getCapacity(BmpHeader header, EmbeddingMode mode) {
+        return (int) Math.min(Integer.MAX_VALUE - PayloadFrame.HEADER_SIZE, mode.getCapacity(header));
+    }
+
+    /**
+     * A payload ready for embedding: the encoder for everything written in carrier order, and the
+     * stored body if it is scattered instead.
+     */
+    private record PreparedPayload(LsbCodec.Encoder encoder, byte[] scatteredBody, long scatterKey) {
+
+        void writeScattered(BmpHeader header, EmbeddingMode mode, ByteBuffer[] windows, int rowsPerWindow) {
+            new ScatteredCarrier(header, mode, scatterKey, windows, rowsPerWindow)
+                    .write(scatteredBody, 0, scatteredBody.length, 0);
+        }
+    }
+
+    private static PreparedPayload prepare(BmpHeader header, byte[] textBytes, EmbeddingMode mode,
+                                           PayloadCipher cipher) throws IOException {
+        mode.validateFor(header);
+
+        // Every stored byte costs 8 / bitsPerChannel carrier bytes, so store the payload compressed when that is smaller
+        byte[] stored = textBytes;
+        int flags = 0;
+        byte[] compressed = PayloadFrame.deflate(textBytes);
+        if (compressed != null) {
+            stored = compressed;
+            flags = PayloadFrame.FLAG_COMPRESSED;
         }
+        // Compress first: ciphertext does not compress
+        if (cipher != null) {
+            stored = cipher.encrypt(stored);
+            flags |= PayloadFrame.FLAG_ENCRYPTED;
+        }
+
+        int capacity = getCapacity(header, mode);
+        if (stored.length > capacity) {
+            throw new IOException("Insufficient space in image: " + stored.length
+                    + " bytes requested, " + capacity + " bytes available");
+        }
+        LsbCodec.Encoder encoder = new LsbCodec.Encoder(header.getBytesPerPixel())
+                .append(PayloadFrame.header(stored, textBytes.length, flags, mode), EmbeddingMode.DEFAULT);
+        if (mode.isScattered()) {
+            long key = cipher != null ? cipher.scatterKey() : ScatteredCarrier.DEFAULT_KEY;
+            return new PreparedPayload(encoder, stored, key);
+        }
+        return new PreparedPayload(encoder.append(stored, mode), null, 0);
+    }
 
-        // Mark end of text with a null byte
-        for (int i = 0; i < 8; i++) {
-            imageBytes[offset] = (byte) (imageBytes[offset] & 0xFE);
-            offset++;
+    /**
+     * Wraps the pixel array of an in-memory BMP in a buffer whose index 0 is the first row.
+     * Little-endian order lets {@link LsbKernels} use the words as read, without swapping bytes.
+     */
+    private static ByteBuffer pixelRows(byte[] imageBytes, BmpHeader header) {
+        return ByteBuffer.wrap(imageBytes, (int) header.getPixelDataOffset(), (int) header.getPixelDataLength())
+                .slice()
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Feeds the pixel bytes of every row in the buffer to the processor, skipping row padding.
+     * The buffer must start at a row boundary.
+     */
+    static void processRows(ByteBuffer rows, BmpHeader header, LsbCodec.RunProcessor processor) {
+        int stride = header.getRowStride();
+        int rowBytes = header.getPixelBytesPerRow();
+        for (int position = 0; position + rowBytes <= rows.limit() && !processor.isDone(); position += stride) {
+            processor.process(rows, position, rowBytes);
+        }
+    }
+
+    /**
+     * Maps the pixel array window by window, each window holding a whole number of rows,
+     * and feeds the rows to the processor until all rows are visited or it reports completion.
+     */
+    static void forEachMappedRows(FileChannel channel, FileChannel.MapMode mode, BmpHeader header,
+                                          LsbCodec.RunProcessor processor) throws IOException {
+        int stride = header.getRowStride();
+        int height = header.getHeight();
+        int rowsPerWindow = rowsPerWindow(header);
+
+        for (int row = 0; row < height && !processor.isDone(); row += rowsPerWindow) {
+            int rows = Math.min(rowsPerWindow, height - row);
+            long position = header.getPixelDataOffset() + (long) row * stride;
+            ByteBuffer window = channel.map(mode, position, (long) rows * stride).order(ByteOrder.LITTLE_ENDIAN);
+            processRows(window, header, processor);
+        }
+    }
+
+    /**
+     * Maps the whole pixel array as consecutive windows of {@link #rowsPerWindow(BmpHeader)} rows,
+     * for processing that needs random access to every row.
+     */
+    private static ByteBuffer[] mapRows(FileChannel channel, FileChannel.MapMode mode, BmpHeader header)
+            throws IOException {
+        int stride = header.getRowStride();
+        int height = header.getHeight();
+        int rowsPerWindow = rowsPerWindow(header);
+
+        ByteBuffer[] windows = new ByteBuffer[(height + rowsPerWindow - 1) / rowsPerWindow];
+        for (int i = 0; i < windows.length; i++) {
+            int row = i * rowsPerWindow;
+            int rows = Math.min(rowsPerWindow, height - row);
+            long position = header.getPixelDataOffset() + (long) row * stride;
+            windows[i] = channel.map(mode, position, (long) rows * stride).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return windows;
+    }
+
+    private static int rowsPerWindow(BmpHeader header) {
+        return Math.max(1, AppConstants.MAPPED_WINDOW_BYTES / header.getRowStride());
+    }
+
+    private static void copyFile(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long copied = 0;
+            while (copied < size) {
+                copied += in.transferTo(copied, size - copied, out);
+            }
         }
     }
-    
 }
@@ -0,0 +1,178 @@
+package org.app;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An image file loaded in the GUI: its BMP header, a preview decoded once for display, and the
+ * full-resolution image, decoded only when an operation needs it.
+ * <p>
+ * For uncompressed 24- and 32-bit BMPs, the preview is sampled straight from the file: only the
+ * rows that end up in the preview are read, so loading a 100-megapixel scan reads a few hundred
+ * rows instead of decoding the whole image. Other files are decoded and scaled by JavaFX, which
+ * also decodes every full-resolution image.
+ * </p>
+ * <p>
+ * The full-resolution image is decoded on first use and then shared by every operation on the
+ * session. It is held through a soft reference, so a very large image can be reclaimed under
+ * memory pressure and is decoded again if needed later. A session is thread-safe.
+ * </p>
+ */
+public class ImageSession {
+
+    private static final Logger logger = LogManager.getLogger(ImageSession.class);
+
+    private final File file;
+    private final BmpHeader header;
+    private final Image preview;
+    private SoftReference<Image> fullImage = new SoftReference<>(null);
+
+    private ImageSession(File file, BmpHeader header, Image preview) {
+        this.file = file;
+        this.header = header;
+        this.preview = preview;
+    }
+
+    /**
+     * Opens an image file and decodes its preview. Call on a worker thread.
+     *
+     * @param file          the image file.
+     * @param previewWidth  the maximum width of the preview.
+     * @param previewHeight the maximum height of the preview.
+     * @return the session.
+     * @throws IOException if the file cannot be read or decoded.
+     */
+    public static ImageSession open(File file, double previewWidth, double previewHeight) throws IOException {
+        BmpHeader header;
+        try {
+            header = BmpHeader.read(file.toPath());
+        } catch (IOException e) {
+            // Still displayable if JavaFX can decode it, though not usable as a carrier
+            logger.warn("Not a supported BMP carrier: {}", file, e);
+            header = null;
+        }
+        Image preview;
+        if (isSampleable(header)) {
+            double scale = Math.min(1, Math.min(previewWidth / header.getWidth(), previewHeight / header.getHeight()));
+            int width = Math.max(1, (int) Math.round(header.getWidth() * scale));
+            int height = Math.max(1, (int) Math.round(header.getHeight() * scale));
+            preview = sample(file, header, width, height);
+        } else {
+            try (InputStream in = new FileInputStream(file)) {
+                preview = new Image(in, previewWidth, previewHeight, true, true);
+            }
+            if (preview.isError()) {
+                throw new IOException("Cannot decode " + file, preview.getException());
+            }
+        }
+        return new ImageSession(file, header, preview);
+    }
+
+    /**
+     * Returns the image file.
+     *
+     * @return the file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the BMP header, read when the session was opened.
+     *
+     * @return the header, or {@code null} if the file is not a BMP the application can embed into.
+     */
+    public BmpHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns the preview decoded when the session was opened.
+     *
+     * @return the preview image.
+     */
+    public Image getPreview() {
+        return preview;
+    }
+
+    /**
+     * Returns the image at full resolution, decoding it on first use. Call on a worker thread.
+     *
+     * @return the full-resolution image.
+     * @throws IOException if the file cannot be read or decoded.
+     */
+    public synchronized Image getFullImage() throws IOException {
+        Image image = fullImage.get();
+        if (image == null) {
+            logger.info("Decoding full-resolution image {}", file);
+            try (Metrics.Sample sample = Metrics.start(Metrics.Stage.DECODE);
+                 InputStream in = new FileInputStream(file)) {
+                sample.addBytes(file.length());
+                image = new Image(in);
+            }
+            if (image.isError()) {
+                throw new IOException("Cannot decode " + file, image.getException());
+            }
+            fullImage = new SoftReference<>(image);
+        }
+        return image;
+    }
+
+    /**
+     * Returns whether the pixels can be read directly: blue, green, red (and unused alpha) bytes.
+     */
+    private static boolean isSampleable(BmpHeader header) {
+        return header != null && header.getCompression() == BmpHeader.BI_RGB && header.getBytesPerPixel() >= 3;
+    }
+
+    /**
+     * Decodes a preview of the given size by nearest-neighbour sampling, reading only the sampled rows.
+     */
+    private static Image sample(File file, BmpHeader header, int width, int height) throws IOException {
+        int sourceWidth = header.getWidth();
+        int sourceHeight = header.getHeight();
+        int bytesPerPixel = header.getBytesPerPixel();
+        int[] columns = new int[width];
+        for (int x = 0; x < width; x++) {
+            columns[x] = (int) (((long) x * 2 + 1) * sourceWidth / (2L * width)) * bytesPerPixel;
+        }
+
+        WritableImage image = new WritableImage(width, height);
+        ByteBuffer row = ByteBuffer.allocate(header.getPixelBytesPerRow());
+        int[] pixels = new int[width];
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for (int y = 0; y < height; y++) {
+                int sourceRow = (int) (((long) y * 2 + 1) * sourceHeight / (2L * height));
+                int fileRow = header.isTopDown() ? sourceRow : sourceHeight - 1 - sourceRow;
+                long position = header.getPixelDataOffset() + (long) fileRow * header.getRowStride();
+                row.clear();
+                while (row.hasRemaining()) {
+                    if (channel.read(row, position + row.position()) < 0) {
+                        throw new EOFException("Unexpected end of file while reading BMP pixel data");
+                    }
+                }
+                byte[] bytes = row.array();
+                for (int x = 0; x < width; x++) {
+                    int offset = columns[x];
+                    pixels[x] = 0xFF000000 | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 1] & 0xFF) << 8
+                            | (bytes[offset] & 0xFF);
+                }
+                image.getPixelWriter().setPixels(0, y, width, 1, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+            }
+        }
+        return image;
+    }
+}
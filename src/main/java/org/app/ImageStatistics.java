@@ -1,14 +1,25 @@
 package org.app;
 
 import javafx.scene.image.Image;
-import javafx.scene.image.PixelReader;
 
 /**
  * Utility class for computing various statistics about images, such as dimensions,
  * pixel count, unique colors, and embedding capacity.
+ * <p>
+ * Colours are counted exactly by a {@link ColorCensus}. Its 2 MiB bitset is reused: each thread keeps
+ * one census for the overloads that take none, and callers may pass their own.
+ * </p>
+ * <p>
+ * The available bits are the payload capacity of the carrier, after the frame header and, in scattered
+ * mode, the rows the permutation leaves out. Callers holding the carrier's {@link BmpHeader} should pass
+ * it, since the image may be a scaled preview; without it, the image is taken as a 24-bit BMP of its size.
+ * </p>
  */
 public class ImageStatistics {
 
+    /** One census per thread, so repeated calls on a worker thread do not allocate a bitset each. */
+    private static final ThreadLocal<ColorCensus> CENSUS = ThreadLocal.withInitial(ColorCensus::new);
+
     /**
      * Computes statistical information about a given image, including dimensions,
      * pixel count, unique colors, and available bits for data embedding.
@@ -17,37 +28,80 @@ public class ImageStatistics {
      * @return a formatted string containing the image statistics, or a message indicating no image is loaded.
      */
     public static String getImageStatistics(Image image) {
+        return getImageStatistics(image, EmbeddingMode.DEFAULT);
+    }
+
+    /**
+     * Computes statistical information about a given image, reporting the bits available for
+     * embedding in the given mode (selected colour channels times bits per channel).
+     *
+     * @param image the input image to analyze. If null, returns a message indicating no image is loaded.
+     * @param mode  the embedding mode used to compute the available bits.
+     * @return a formatted string containing the image statistics, or a message indicating no image is loaded.
+     */
+    public static String getImageStatistics(Image image, EmbeddingMode mode) {
+        return getImageStatistics(image, mode, PixelBands.PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Computes statistical information about a given image, scanning row bands in parallel
+     * when the image has at least {@code parallelThreshold} pixels.
+     *
+     * @param image             the input image to analyze. If null, returns a message indicating no image is loaded.
+     * @param mode              the embedding mode used to compute the available bits.
+     * @param parallelThreshold the pixel count below which the image is scanned on the calling thread.
+     * @return a formatted string containing the image statistics, or a message indicating no image is loaded.
+     * @see PixelBands
+     */
+    public static String getImageStatistics(Image image, EmbeddingMode mode, int parallelThreshold) {
         if (image == null) {
             return "No image loaded.";
         }
+        return format(image, null, mode, CENSUS.get().count(image, parallelThreshold));
+    }
 
-        int width = (int) image.getWidth();
-        int height = (int) image.getHeight();
-        int pixelCount = width * height;
-
-
-        int[] colorHistogram = new int[256];
-        int uniqueColors = 0;
-
-        PixelReader pixelReader = image.getPixelReader();
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int pixel = pixelReader.getArgb(x, y);
-                int r = (pixel >> 16) & 0xFF;
-                int g = (pixel >> 8) & 0xFF;
-                int b = pixel & 0xFF;
-                int colorIndex = (r + g + b) / 3;
-                if (colorHistogram[colorIndex] == 0) {
-                    uniqueColors++;
-                }
-                colorHistogram[colorIndex]++;
-            }
+    /**
+     * Computes statistical information about an image loaded from a BMP carrier, reporting the
+     * carrier's capacity rather than that of the image, which may be a scaled preview.
+     *
+     * @param image  the input image to analyze. If null, returns a message indicating no image is loaded.
+     * @param header the BMP header of the carrier the image was loaded from, or {@code null} if unknown.
+     * @param mode   the embedding mode used to compute the available bits.
+     * @return a formatted string containing the image statistics, or a message indicating no image is loaded.
+     */
+    public static String getImageStatistics(Image image, BmpHeader header, EmbeddingMode mode) {
+        if (image == null) {
+            return "No image loaded.";
         }
+        return format(image, header, mode, CENSUS.get().count(image));
+    }
 
+    /**
+     * Computes statistical information about a given image with a caller-supplied {@link ColorCensus},
+     * so a batch of images can share one colour bitset instead of allocating one per image.
+     *
+     * @param image  the input image to analyze. If null, returns a message indicating no image is loaded.
+     * @param mode   the embedding mode used to compute the available bits.
+     * @param census the census to count colours with; its previous results are replaced.
+     * @return a formatted string containing the image statistics, or a message indicating no image is loaded.
+     */
+    public static String getImageStatistics(Image image, EmbeddingMode mode, ColorCensus census) {
+        if (image == null) {
+            return "No image loaded.";
+        }
+        return format(image, null, mode, census.count(image));
+    }
 
-        int availableBits = pixelCount * 3;
+    private static String format(Image image, BmpHeader header, EmbeddingMode mode, ColorCensus census) {
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        int pixelCount = width * height;
+        BmpHeader carrier = header != null ? header : BmpHeader.of24Bit(width, height);
+        long availableBits = ImageCryptoTools.getCapacity(carrier, mode) * 8L;
 
-        return String.format("Image Dimensions: %dx%d\nPixel Count: %d\nUnique Colors: %d\nAvailable Bits for Embedding: %d",
-                width, height, pixelCount, uniqueColors, availableBits);
+        return String.format("Image Dimensions: %dx%d\nPixel Count: %d\nUnique Colors: %d\nMean R/G/B: %.1f/%.1f/%.1f\nAvailable Bits for Embedding: %d (%s)",
+                width, height, pixelCount, census.getUniqueColors(),
+                census.getChannelMean(0), census.getChannelMean(1), census.getChannelMean(2),
+                availableBits, mode);
     }
 }
@@ -0,0 +1,397 @@
+package org.app;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Streaming counterparts of {@link ImageCryptoTools} for carriers and payloads that are not files.
+ * <p>
+ * The carrier is read, modified and written one chunk of whole pixel rows at a time
+ * ({@link AppConstants#STREAM_CHUNK_BYTES}), so memory use does not depend on the size of the
+ * image or of the payload. Everything outside the pixel rows (headers, palette, row padding and
+ * any trailing data) is copied verbatim.
+ * </p>
+ * <p>
+ * Because the payload length is not known in advance, payloads are written as chunked
+ * {@link PayloadFrame}s; all extraction methods of {@link ImageCryptoTools} read them transparently.
+ * </p>
+ * <p>
+ * Extraction writes payload bytes to the output as soon as they are decoded and stops reading
+ * the carrier once the payload is complete.
+ * </p>
+ */
+public class ImageStreamTools {
+
+    /**
+     * Embeds a payload read from a stream into a BMP read from another stream, writing the result
+     * to an output stream. The streams are not closed.
+     *
+     * @param carrier the carrier BMP.
+     * @param payload the payload, read until end of stream.
+     * @param output  receives the modified BMP.
+     * @param mode    how many LSBs per channel, and which channels, carry the payload.
+     * @return the number of payload bytes embedded.
+     * @throws IOException if a stream fails, the carrier is not a supported BMP, the mode does not
+     *                     fit it or is scattered, or the payload does not fit; output written so far is
+     *                     then incomplete.
+     * @see #embed(ReadableByteChannel, ReadableByteChannel, WritableByteChannel, EmbeddingMode)
+     */
+    public static long embed(InputStream carrier, InputStream payload, OutputStream output, EmbeddingMode mode)
+            throws IOException {
+        return embed(carrier, payload, output, mode, null);
+    }
+
+    /**
+     * Embeds a payload read from a stream into a BMP read from another stream, encrypting it first
+     * if a cipher is given. The streams are not closed.
+     *
+     * @param carrier the carrier BMP.
+     * @param payload the payload, read until end of stream.
+     * @param output  receives the modified BMP.
+     * @param mode    how many LSBs per channel, and which channels, carry the payload.
+     * @param cipher  encrypts the payload; {@code null} to embed it in the clear.
+     * @return the number of payload bytes embedded, before encryption.
+     * @throws IOException if a stream fails, the carrier is not a supported BMP, the mode does not
+     *                     fit it or is scattered, or the payload does not fit; output written so far is
+     *                     then incomplete.
+     * @see #embed(ReadableByteChannel, ReadableByteChannel, WritableByteChannel, EmbeddingMode, PayloadCipher)
+     */
+    public static long embed(InputStream carrier, InputStream payload, OutputStream output, EmbeddingMode mode,
+                             PayloadCipher cipher) throws IOException {
+        return embed(Channels.newChannel(carrier), Channels.newChannel(payload), Channels.newChannel(output),
+                mode, cipher);
+    }
+
+    /**
+     * Embeds a payload read from a channel into a BMP read from another channel, writing the result
+     * to an output channel chunk by chunk. The channels are not closed.
+     *
+     * @param carrier the carrier BMP.
+     * @param payload the payload, read until end of stream.
+     * @param output  receives the modified BMP.
+     * @param mode    how many LSBs per channel, and which channels, carry the payload.
+     * @return the number of payload bytes embedded.
+     * @throws IOException if a channel fails, the carrier is not a supported BMP, the mode does not
+     *                     fit it or is scattered, or the payload does not fit; output written so far is
+     *                     then incomplete.
+     */
+    public static long embed(ReadableByteChannel carrier, ReadableByteChannel payload, WritableByteChannel output,
+                             EmbeddingMode mode) throws IOException {
+        return embed(carrier, payload, output, mode, null);
+    }
+
+    /**
+     * Embeds a payload read from a channel into a BMP read from another channel, encrypting it
+     * on the fly if a cipher is given. The channels are not closed.
+     *
+     * @param carrier the carrier BMP.
+     * @param payload the payload, read until end of stream.
+     * @param output  receives the modified BMP.
+     * @param mode    how many LSBs per channel, and which channels, carry the payload.
+     * @param cipher  encrypts the payload; {@code null} to embed it in the clear.
+     * @return the number of payload bytes embedded, before encryption.
+     * @throws IOException if a channel fails, the carrier is not a supported BMP, the mode does not
+     *                     fit it or is scattered, or the payload does not fit; output written so far is
+     *                     then incomplete.
+     */
+    public static long embed(ReadableByteChannel carrier, ReadableByteChannel payload, WritableByteChannel output,
+                             EmbeddingMode mode, PayloadCipher cipher) throws IOException {
+        try (Metrics.Sample sample = Metrics.start(Metrics.Stage.EMBED)) {
+            if (mode.isScattered()) {
+                throw new IOException("Scattered embedding needs random access to the carrier; embed into a file instead");
+            }
+            BmpHeader header = copyHeaders(carrier, output);
+            mode.validateFor(header);
+
+            LsbCodec.Encoder encoder = new LsbCodec.Encoder(header.getBytesPerPixel())
+                    .append(PayloadFrame.chunkedHeader(cipher != null ? PayloadFrame.FLAG_ENCRYPTED : 0, mode),
+                            EmbeddingMode.DEFAULT);
+            PayloadChunker chunker = new PayloadChunker(payload, encoder, mode,
+                    cipher != null ? cipher.newEncryption() : null);
+
+            int stride = header.getRowStride();
+            int rowsPerChunk = Math.max(1, AppConstants.STREAM_CHUNK_BYTES / stride);
+            ByteBuffer rows = ByteBuffer.allocate(rowsPerChunk * stride).order(ByteOrder.LITTLE_ENDIAN);
+            for (int row = 0; row < header.getHeight(); row += rowsPerChunk) {
+                int count = Math.min(rowsPerChunk, header.getHeight() - row);
+                rows.clear().limit(count * stride);
+                readFully(carrier, rows, "pixel data");
+
+                // Keep just enough payload queued to fill these rows
+                chunker.fill((long) count * header.getPixelBytesPerRow() * mode.getBitsPerChannel() / 8 + 1);
+                ImageCryptoTools.processRows(rows, header, encoder);
+
+                rows.flip();
+                sample.addBytes(rows.remaining());
+                writeFully(output, rows);
+            }
+
+            if (!chunker.isFinished() || !encoder.isDone()) {
+                throw new IOException("Insufficient space in image: payload exceeds " + mode.getCapacity(header)
+                        + " bytes available");
+            }
+            copyRemaining(carrier, output);
+            return chunker.getTotalBytes();
+        }
+    }
+
+    /**
+     * Extracts a framed payload from a BMP read from a stream, writing the payload bytes to an output
+     * stream as they are decoded. The streams are not closed.
+     *
+     * @param carrier the BMP to read.
+     * @param output  receives the payload bytes.
+     * @return the number of payload bytes written, or -1 if the carrier holds no framed payload.
+     * @throws IOException if a stream fails, the carrier is not a supported BMP, or the payload is
+     *                     truncated or corrupted; output written so far should then be discarded.
+     * @see #extract(ReadableByteChannel, WritableByteChannel)
+     */
+    public static long extract(InputStream carrier, OutputStream output) throws IOException {
+        return extract(carrier, output, null);
+    }
+
+    /**
+     * Extracts a framed payload from a BMP read from a stream, decrypting it if it is encrypted.
+     * The streams are not closed.
+     *
+     * @param carrier the BMP to read.
+     * @param output  receives the payload bytes.
+     * @param cipher  decrypts an encrypted payload; may be {@code null} if no password is known.
+     * @return the number of payload bytes written, or -1 if the carrier holds no framed payload.
+     * @throws IOException if a stream fails, the carrier is not a supported BMP, the payload is
+     *                     truncated or corrupted, or it is encrypted and the password is missing or wrong;
+     *                     output written so far should then be discarded.
+     * @see #extract(ReadableByteChannel, WritableByteChannel, PayloadCipher)
+     */
+    public static long extract(InputStream carrier, OutputStream output, PayloadCipher cipher) throws IOException {
+        return extract(Channels.newChannel(carrier), output, cipher);
+    }
+
+    /**
+     * Extracts a framed payload from a BMP read from a channel, writing the payload bytes to an output
+     * channel as they are decoded. The channels are not closed.
+     *
+     * @param carrier the BMP to read.
+     * @param output  receives the payload bytes.
+     * @return the number of payload bytes written, or -1 if the carrier holds no framed payload.
+     * @throws IOException if a channel fails, the carrier is not a supported BMP, or the payload is
+     *                     truncated or corrupted; output written so far should then be discarded.
+     */
+    public static long extract(ReadableByteChannel carrier, WritableByteChannel output) throws IOException {
+        return extract(carrier, output, null);
+    }
+
+    /**
+     * Extracts a framed payload from a BMP read from a channel, decrypting it if it is encrypted.
+     * The channels are not closed.
+     *
+     * @param carrier the BMP to read.
+     * @param output  receives the payload bytes.
+     * @param cipher  decrypts an encrypted payload; may be {@code null} if no password is known.
+     * @return the number of payload bytes written, or -1 if the carrier holds no framed payload.
+     * @throws IOException if a channel fails, the carrier is not a supported BMP, the payload is
+     *                     truncated or corrupted, or it is encrypted and the password is missing or wrong;
+     *                     output written so far should then be discarded.
+     */
+    public static long extract(ReadableByteChannel carrier, WritableByteChannel output, PayloadCipher cipher)
+            throws IOException {
+        return extract(carrier, Channels.newOutputStream(output), cipher);
+    }
+
+    private static long extract(ReadableByteChannel carrier, OutputStream output, PayloadCipher cipher)
+            throws IOException {
+        try (Metrics.Sample sample = Metrics.start(Metrics.Stage.EXTRACT)) {
+            BmpHeader header = skipHeaders(carrier);
+            sample.addBytes(header.getPixelDataLength());
+            try (PayloadFrame.Reader reader = new PayloadFrame.Reader(header, output, cipher)) {
+                processRows(carrier, header, reader.decoder());
+                return reader.finish();
+            }
+        }
+    }
+
+    /**
+     * Reads the headers of a BMP from a channel, skipping everything up to the pixel array.
+     *
+     * @param carrier the channel, positioned at the start of the BMP.
+     * @return the parsed header; the channel is left at the first pixel row.
+     * @throws IOException if the channel fails or does not hold a supported BMP.
+     */
+    static BmpHeader skipHeaders(ReadableByteChannel carrier) throws IOException {
+        return copyHeaders(carrier, null);
+    }
+
+    /**
+     * Reads the pixel rows from a channel one chunk at a time and feeds them to the processor,
+     * until all rows are read or it reports completion.
+     *
+     * @param carrier   the channel, positioned at the first pixel row.
+     * @param header    the BMP header.
+     * @param processor receives the pixel bytes of every row.
+     * @throws IOException if the channel fails or ends before the last row.
+     */
+    static void processRows(ReadableByteChannel carrier, BmpHeader header, LsbCodec.RunProcessor processor)
+            throws IOException {
+        int stride = header.getRowStride();
+        int rowsPerChunk = Math.max(1, AppConstants.STREAM_CHUNK_BYTES / stride);
+        ByteBuffer rows = ByteBuffer.allocate(rowsPerChunk * stride).order(ByteOrder.LITTLE_ENDIAN);
+        for (int row = 0; row < header.getHeight() && !processor.isDone(); row += rowsPerChunk) {
+            int count = Math.min(rowsPerChunk, header.getHeight() - row);
+            rows.clear().limit(count * stride);
+            readFully(carrier, rows, "pixel data");
+            ImageCryptoTools.processRows(rows, header, processor);
+        }
+    }
+
+    /**
+     * Reads the file header, DIB header and everything else up to the pixel array, writes it unchanged
+     * unless {@code output} is {@code null}, and returns the parsed header.
+     */
+    private static BmpHeader copyHeaders(ReadableByteChannel carrier, WritableByteChannel output) throws IOException {
+        // Read exactly the file header and the DIB header, so no pixel byte is consumed early
+        ByteBuffer start = ByteBuffer.allocate(BmpHeader.MAX_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        start.limit(BmpHeader.FILE_HEADER_SIZE + 4);
+        readFully(carrier, start, "header");
+        int dibHeaderSize = start.getInt(BmpHeader.FILE_HEADER_SIZE);
+        if (dibHeaderSize > 4 && BmpHeader.FILE_HEADER_SIZE + dibHeaderSize <= start.capacity()) {
+            start.limit(BmpHeader.FILE_HEADER_SIZE + dibHeaderSize);
+            readFully(carrier, start, "header");
+        }
+        start.flip();
+
+        // The stream size is unknown; the size recorded in the file header stands in for it
+        BmpHeader header = BmpHeader.parse(start, Integer.toUnsignedLong(start.getInt(2)));
+        if (output != null) {
+            writeFully(output, start);
+        }
+        copyExactly(carrier, output, header.getPixelDataOffset() - start.limit());
+        return header;
+    }
+
+    /**
+     * Copies {@code length} bytes, or skips them if {@code out} is {@code null}.
+     */
+    private static void copyExactly(ReadableByteChannel in, WritableByteChannel out, long length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(AppConstants.STREAM_CHUNK_BYTES, Math.max(1, length)));
+        while (length > 0) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), length));
+            readFully(in, buffer, "header");
+            buffer.flip();
+            length -= buffer.remaining();
+            if (out != null) {
+                writeFully(out, buffer);
+            }
+        }
+    }
+
+    private static void copyRemaining(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(AppConstants.STREAM_CHUNK_BYTES);
+        while (in.read(buffer) >= 0) {
+            buffer.flip();
+            writeFully(out, buffer);
+            buffer.clear();
+        }
+    }
+
+    static void readFully(ReadableByteChannel in, ByteBuffer buffer, String what) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of stream while reading BMP " + what);
+            }
+        }
+    }
+
+    static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * Reads the payload stream into chunks of a chunked frame and queues them on the encoder,
+     * followed by the trailer once the stream ends. An encrypted payload is encrypted as it is read;
+     * the chunks then hold the ciphertext, and the checksum covers it.
+     */
+    private static class PayloadChunker {
+
+        private final ReadableByteChannel payload;
+        private final LsbCodec.Encoder encoder;
+        private final EmbeddingMode mode;
+        private final PayloadCipher.Encryption encryption;
+        private final CRC32C checksum = new CRC32C();
+        private long totalBytes;
+        private boolean finished;
+
+        PayloadChunker(ReadableByteChannel payload, LsbCodec.Encoder encoder, EmbeddingMode mode,
+                       PayloadCipher.Encryption encryption) {
+            this.payload = payload;
+            this.encoder = encoder;
+            this.mode = mode;
+            this.encryption = encryption;
+        }
+
+        /**
+         * Queues chunks until at least {@code wanted} bytes are pending or the payload is exhausted.
+         */
+        void fill(long wanted) throws IOException {
+            while (!finished && encoder.pendingBytes() < wanted) {
+                ByteBuffer chunk = ByteBuffer.allocate(PayloadFrame.MAX_CHUNK_SIZE);
+                boolean endOfStream = false;
+                while (chunk.hasRemaining()) {
+                    if (payload.read(chunk) < 0) {
+                        endOfStream = true;
+                        break;
+                    }
+                }
+                if (chunk.position() > 0) {
+                    totalBytes += chunk.position();
+                    if (encryption != null) {
+                        append(encryption.update(chunk.array(), 0, chunk.position()));
+                    } else if (chunk.position() == chunk.capacity()) {
+                        append(chunk.array());
+                    } else {
+                        append(Arrays.copyOf(chunk.array(), chunk.position()));
+                    }
+                }
+                if (endOfStream) {
+                    if (encryption != null) {
+                        append(encryption.finish());
+                    }
+                    encoder.append(PayloadFrame.trailer(checksum.getValue()), mode);
+                    finished = true;
+                }
+            }
+        }
+
+        /**
+         * Queues stored bytes as one or more chunks; the salt and IV make the first encrypted piece
+         * longer than a chunk.
+         */
+        private void append(byte[] data) {
+            for (int offset = 0; offset < data.length; offset += PayloadFrame.MAX_CHUNK_SIZE) {
+                byte[] piece = offset == 0 && data.length <= PayloadFrame.MAX_CHUNK_SIZE
+                        ? data
+                        : Arrays.copyOfRange(data, offset, Math.min(data.length, offset + PayloadFrame.MAX_CHUNK_SIZE));
+                checksum.update(piece);
+                encoder.append(PayloadFrame.chunkLength(piece.length), mode).append(piece, mode);
+            }
+        }
+
+        boolean isFinished() {
+            return finished;
+        }
+
+        long getTotalBytes() {
+            return totalBytes;
+        }
+    }
+}
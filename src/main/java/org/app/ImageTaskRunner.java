@@ -0,0 +1,239 @@
+package org.app;
+
+import javafx.concurrent.Task;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs image work as cancellable {@link Task}s on a dedicated executor, off the JavaFX Application Thread.
+ * <p>
+ * Every task is submitted under a key describing the operation, e.g. {@code "visual-attack:modified"}.
+ * A request whose key is already running is coalesced: it is either ignored (a double click on the
+ * same button) or replaces the running task (statistics recomputed for a new embedding mode).
+ * The progress bar and status label follow the most recently started task; when it ends, they fall
+ * back to the most recently started task that is still running.
+ * </p>
+ * <p>
+ * All methods except {@link Work#run(Progress)} must be called on the JavaFX Application Thread.
+ * </p>
+ */
+public class ImageTaskRunner {
+
+    private static final Logger logger = LogManager.getLogger(ImageTaskRunner.class);
+
+    /**
+     * Background work performed by a task.
+     *
+     * @param <T> the type of the result.
+     */
+    @FunctionalInterface
+    public interface Work<T> {
+
+        /**
+         * Performs the work on a background thread.
+         *
+         * @param progress used to report progress and to check for cancellation.
+         * @return the result, handed to the success callback on the JavaFX Application Thread.
+         * @throws Exception if the work fails; the failure callback receives the exception.
+         */
+        T run(Progress progress) throws Exception;
+    }
+
+    /**
+     * Progress reporting and cancellation checks available to running work.
+     */
+    public interface Progress {
+
+        /**
+         * Reports that {@code done} out of {@code total} steps are complete.
+         *
+         * @param done    the completed steps.
+         * @param total   the total number of steps.
+         * @param message a short description of the current step.
+         * @throws CancellationException if the task has been cancelled.
+         */
+        void step(long done, long total, String message);
+
+        /**
+         * Returns whether the task has been cancelled.
+         *
+         * @return {@code true} once cancellation was requested.
+         */
+        boolean isCancelled();
+    }
+
+    private final ExecutorService executor;
+    private final Map<String, Task<?>> running = new HashMap<>();
+    /** Running tasks that have not been superseded, most recently started last. */
+    private final Deque<Task<?>> started = new ArrayDeque<>();
+    private final ProgressBar progressBar;
+    private final Label statusLabel;
+
+    /**
+     * Creates a runner with its own pool of daemon worker threads.
+     *
+     * @param threads     the number of worker threads.
+     * @param progressBar the progress bar bound to the current task.
+     * @param statusLabel the label showing the current task's message.
+     */
+    public ImageTaskRunner(int threads, ProgressBar progressBar, Label statusLabel) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "image-task-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.progressBar = progressBar;
+        this.statusLabel = statusLabel;
+    }
+
+    /**
+     * Submits work unless a task with the same key is already running.
+     *
+     * @param key       identifies the operation for coalescing.
+     * @param work      the background work.
+     * @param onSuccess receives the result on the JavaFX Application Thread.
+     * @param onFailure receives the failure on the JavaFX Application Thread.
+     * @param <T>       the type of the result.
+     * @return {@code true} if the work was submitted, {@code false} if it was coalesced with a running task.
+     */
+    public <T> boolean submit(String key, Work<T> work, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        if (running.containsKey(key)) {
+            logger.info("Task {} is already running, ignoring duplicate request", key);
+            return false;
+        }
+        start(key, work, onSuccess, onFailure);
+        return true;
+    }
+
+    /**
+     * Submits work, cancelling a running task with the same key first.
+     * Use this when a newer request makes the running one obsolete.
+     *
+     * @param key       identifies the operation for coalescing.
+     * @param work      the background work.
+     * @param onSuccess receives the result on the JavaFX Application Thread.
+     * @param onFailure receives the failure on the JavaFX Application Thread.
+     * @param <T>       the type of the result.
+     */
+    public <T> void replace(String key, Work<T> work, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        Task<?> previous = running.remove(key);
+        if (previous != null) {
+            logger.info("Task {} superseded by a newer request", key);
+            started.remove(previous);
+            previous.cancel(true);
+        }
+        start(key, work, onSuccess, onFailure);
+    }
+
+    /**
+     * Cancels every running task.
+     */
+    public void cancelAll() {
+        for (Task<?> task : new ArrayList<>(running.values())) {
+            task.cancel(true);
+        }
+    }
+
+    /**
+     * Cancels every running task and stops the worker threads.
+     */
+    public void shutdown() {
+        cancelAll();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns whether any task is running.
+     *
+     * @return {@code true} if at least one task has not finished yet.
+     */
+    public boolean isBusy() {
+        return !running.isEmpty();
+    }
+
+    private <T> void start(String key, Work<T> work, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        BackgroundTask<T> task = new BackgroundTask<>(work);
+        running.put(key, task);
+        started.addLast(task);
+
+        task.setOnSucceeded(e -> {
+            finish(key, task);
+            onSuccess.accept(task.getValue());
+        });
+        task.setOnFailed(e -> {
+            finish(key, task);
+            onFailure.accept(task.getException());
+        });
+        task.setOnCancelled(e -> {
+            finish(key, task);
+            logger.info("Task {} cancelled", key);
+        });
+
+        follow(task);
+        logger.info("Starting background task {}", key);
+        executor.execute(task);
+    }
+
+    private void finish(String key, Task<?> task) {
+        running.remove(key, task);
+        boolean followed = started.peekLast() == task;
+        started.remove(task);
+        if (!followed) {
+            return; // a superseded or older task: keep following the latest one
+        }
+        progressBar.progressProperty().unbind();
+        statusLabel.textProperty().unbind();
+        if (started.isEmpty()) {
+            progressBar.setProgress(0);
+            statusLabel.setText("");
+        } else {
+            follow(started.peekLast());
+        }
+    }
+
+    private void follow(Task<?> task) {
+        progressBar.progressProperty().bind(task.progressProperty());
+        statusLabel.textProperty().bind(task.messageProperty());
+    }
+
+    /**
+     * Adapts {@link Work} to a JavaFX task, exposing the protected progress methods through {@link Progress}.
+     */
+    private static class BackgroundTask<T> extends Task<T> implements Progress {
+
+        private final Work<T> work;
+
+        BackgroundTask(Work<T> work) {
+            this.work = work;
+        }
+
+        @Override
+        protected T call() throws Exception {
+            updateProgress(-1, 1);
+            return work.run(this);
+        }
+
+        @Override
+        public void step(long done, long total, String message) {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+            updateProgress(done, total);
+            updateMessage(message);
+        }
+    }
+}
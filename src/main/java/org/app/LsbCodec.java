@@ -0,0 +1,456 @@
+package org.app;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Incremental least significant bit (LSB) encoder and decoders.
+ * <p>
+ * All of them work on runs of carrier bytes supplied by the caller, one run at a time, and keep
+ * their position between calls. This lets the same code drive an in-memory image, a sequence of
+ * memory-mapped windows or a stream of chunks: the caller only has to hand over the pixel bytes
+ * of each row in file order. Every run must start on a pixel boundary, so that channel selection
+ * in {@link EmbeddingMode} can tell blue, green and red bytes apart.
+ * </p>
+ * <p>
+ * Payload bits are stored least significant bit first, {@link EmbeddingMode#getBitsPerChannel()}
+ * bits per selected carrier byte. When all channels are used and the payload is byte-aligned,
+ * whole payload bytes are handled by the word-at-a-time {@link LsbKernels}; everything else goes
+ * through the scalar loop.
+ * </p>
+ */
+public class LsbCodec {
+
+    /**
+     * Common contract of the encoder and decoders: consume runs of carrier bytes until done.
+     */
+    public interface RunProcessor {
+
+        /**
+         * Processes a run of carrier bytes.
+         *
+         * @param carrier the buffer holding the carrier bytes, accessed using absolute indices.
+         * @param from    the index of the first carrier byte in the run; must be a pixel boundary.
+         * @param length  the number of carrier bytes in the run.
+         */
+        void process(ByteBuffer carrier, int from, int length);
+
+        /**
+         * Returns whether no further carrier bytes are needed.
+         *
+         * @return {@code true} once processing is complete.
+         */
+        boolean isDone();
+    }
+
+    /**
+     * Writes payload bits into the LSBs of successive carrier bytes.
+     * <p>
+     * The payload is a queue of segments, each with its own {@link EmbeddingMode}. Consecutive
+     * segments in the same mode are packed back to back; when the mode changes, writing continues
+     * with the next carrier byte (and, if channels are selected, the next pixel).
+     * </p>
+     */
+    public static class Encoder implements RunProcessor {
+
+        private record Segment(byte[] data, EmbeddingMode mode) {
+        }
+
+        private final int bytesPerPixel;
+        private final ArrayDeque<Segment> queue = new ArrayDeque<>();
+        private byte[] data;
+        private int byteIndex;
+        private int bitIndex;
+        private EmbeddingMode mode = EmbeddingMode.DEFAULT;
+        private boolean alignPending;
+
+        /**
+         * Creates an encoder with an empty queue.
+         *
+         * @param bytesPerPixel the number of carrier bytes per pixel, used for channel selection.
+         */
+        public Encoder(int bytesPerPixel) {
+            this.bytesPerPixel = bytesPerPixel;
+        }
+
+        /**
+         * Creates an encoder that embeds the given segments back to back in the default mode,
+         * without concatenating them.
+         *
+         * @param segments the byte arrays to embed in order, e.g. a frame header followed by the payload.
+         */
+        public Encoder(byte[]... segments) {
+            this(1);
+            for (byte[] segment : segments) {
+                if (segment.length > 0) {
+                    queue.add(new Segment(segment, EmbeddingMode.DEFAULT));
+                }
+            }
+        }
+
+        /**
+         * Queues a segment for embedding.
+         *
+         * @param segment the bytes to embed.
+         * @param mode    how the segment's bits are spread over carrier bytes.
+         * @return this encoder.
+         */
+        public Encoder append(byte[] segment, EmbeddingMode mode) {
+            if (segment.length > 0) {
+                queue.add(new Segment(segment, mode));
+            }
+            return this;
+        }
+
+        @Override
+        public void process(ByteBuffer carrier, int from, int length) {
+            int end = from + length;
+            int i = from;
+            while (i < end && hasData()) {
+                if (alignPending) {
+                    int phase = (i - from) % bytesPerPixel;
+                    if (phase != 0) {
+                        i += bytesPerPixel - phase;
+                        continue;
+                    }
+                    alignPending = false;
+                }
+
+                int bits = mode.getBitsPerChannel();
+                if (mode.usesAllChannels()) {
+                    if (LsbKernels.SWAR_ENABLED && bitIndex == 0 && LsbKernels.supports(bits)) {
+                        // Whole payload bytes, one word of carrier bytes at a time
+                        int perByte = 8 / bits;
+                        int count = Math.min(data.length - byteIndex, (end - i) / perByte);
+                        if (count > 0) {
+                            LsbKernels.embedBlock(carrier, i, data, byteIndex, count, bits);
+                            i += count * perByte;
+                            byteIndex += count;
+                            continue;
+                        }
+                    }
+                } else if (!mode.isChannelSelected((i - from) % bytesPerPixel)) {
+                    i++;
+                    continue;
+                }
+
+                encodeByte(carrier, i++, bits);
+            }
+        }
+
+        /**
+         * Scalar path: writes up to {@code bits} pending bits into one carrier byte.
+         */
+        private void encodeByte(ByteBuffer carrier, int index, int bits) {
+            int value = 0;
+            int taken = 0;
+            while (taken < bits && hasDataInMode()) {
+                value |= ((data[byteIndex] >> bitIndex) & 1) << taken++;
+                if (++bitIndex == 8) {
+                    bitIndex = 0;
+                    byteIndex++;
+                }
+            }
+            int mask = (1 << taken) - 1;
+            carrier.put(index, (byte) ((carrier.get(index) & ~mask) | value));
+        }
+
+        /**
+         * Makes sure the current segment has bytes left, moving to the next queued segment if needed.
+         * Switching to a segment in a different mode starts a new carrier byte.
+         */
+        private boolean hasData() {
+            while (data == null || byteIndex >= data.length) {
+                Segment next = queue.poll();
+                if (next == null) {
+                    data = null;
+                    return false;
+                }
+                if (!next.mode().equals(mode)) {
+                    mode = next.mode();
+                    alignPending = !mode.usesAllChannels();
+                }
+                data = next.data();
+                byteIndex = 0;
+                bitIndex = 0;
+            }
+            return true;
+        }
+
+        /**
+         * Like {@link #hasData()}, but only moves on to a segment in the current mode,
+         * so that a carrier byte never mixes bits of two modes.
+         */
+        private boolean hasDataInMode() {
+            if (data != null && byteIndex < data.length) {
+                return true;
+            }
+            Segment next = queue.peek();
+            return next != null && next.mode().equals(mode) && hasData();
+        }
+
+        @Override
+        public boolean isDone() {
+            return (data == null || byteIndex >= data.length) && queue.isEmpty();
+        }
+
+        /**
+         * Returns the number of queued payload bytes that have not been fully written yet.
+         * Lets a streaming caller append more segments only when the queue runs low.
+         *
+         * @return the pending byte count, including a partially written byte.
+         */
+        public long pendingBytes() {
+            long pending = data == null ? 0 : data.length - byteIndex;
+            for (Segment segment : queue) {
+                pending += segment.data().length;
+            }
+            return pending;
+        }
+    }
+
+    /**
+     * Decodes bytes from the LSBs of successive carrier bytes until a limit is reached.
+     * <p>
+     * When the limit is reached, the {@link Listener} decides whether to stop or to raise the limit
+     * and keep decoding from the very next carrier byte, possibly in a different {@link EmbeddingMode}.
+     * This lets a framing layer inspect a header as soon as it is complete and then request exactly
+     * the number of payload bytes it announces.
+     * </p>
+     */
+    public static class Decoder implements RunProcessor {
+
+        /**
+         * Callback invoked each time the decoder reaches its current limit.
+         */
+        public interface Listener {
+
+            /**
+             * Called when {@link Decoder#size()} reaches the current limit. Implementations must either
+             * call {@link Decoder#extendLimit(int)} to continue or {@link Decoder#stop()} to finish.
+             *
+             * @param decoder the decoder that reached its limit.
+             */
+            void limitReached(Decoder decoder);
+        }
+
+        private final int bytesPerPixel;
+        private final Listener listener;
+        private byte[] buffer;
+        private int size;
+        private int limit;
+        private int accumulator;
+        private int accumulatedBits;
+        private EmbeddingMode mode = EmbeddingMode.DEFAULT;
+        private boolean alignPending;
+        private boolean done;
+
+        /**
+         * Creates a decoder that first decodes {@code initialLimit} bytes in the default mode.
+         *
+         * @param bytesPerPixel the number of carrier bytes per pixel, used for channel selection.
+         * @param initialLimit  the number of bytes to decode before the listener is consulted.
+         * @param listener      decides how to continue whenever the limit is reached.
+         */
+        public Decoder(int bytesPerPixel, int initialLimit, Listener listener) {
+            this.bytesPerPixel = bytesPerPixel;
+            this.listener = listener;
+            this.buffer = new byte[initialLimit];
+            this.limit = initialLimit;
+        }
+
+        @Override
+        public void process(ByteBuffer carrier, int from, int length) {
+            int end = from + length;
+            int i = from;
+            while (i < end && !done) {
+                if (alignPending) {
+                    int phase = (i - from) % bytesPerPixel;
+                    if (phase != 0) {
+                        i += bytesPerPixel - phase;
+                        continue;
+                    }
+                    alignPending = false;
+                }
+
+                int bits = mode.getBitsPerChannel();
+                if (mode.usesAllChannels()) {
+                    if (LsbKernels.SWAR_ENABLED && accumulatedBits == 0 && LsbKernels.supports(bits)) {
+                        // Whole payload bytes, one word of carrier bytes at a time
+                        int perByte = 8 / bits;
+                        int count = Math.min(limit - size, (end - i) / perByte);
+                        if (count > 0) {
+                            LsbKernels.extractBlock(carrier, i, buffer, size, count, bits);
+                            i += count * perByte;
+                            size += count;
+                            if (size == limit) {
+                                listener.limitReached(this);
+                            }
+                            continue;
+                        }
+                    }
+                } else if (!mode.isChannelSelected((i - from) % bytesPerPixel)) {
+                    i++;
+                    continue;
+                }
+
+                // Scalar path: one carrier byte
+                accumulator |= (carrier.get(i++) & ((1 << bits) - 1)) << accumulatedBits;
+                accumulatedBits += bits;
+                while (accumulatedBits >= 8 && !done) {
+                    buffer[size++] = (byte) accumulator;
+                    accumulator >>>= 8;
+                    accumulatedBits -= 8;
+                    if (size == limit) {
+                        listener.limitReached(this);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Switches the mode used for the carrier bytes that follow. Any partially decoded bits are
+         * discarded, and decoding resumes at the next pixel boundary if channels are selected.
+         *
+         * @param newMode the mode of the data that follows.
+         */
+        public void setMode(EmbeddingMode newMode) {
+            if (!newMode.equals(mode)) {
+                mode = newMode;
+                accumulator = 0;
+                accumulatedBits = 0;
+                alignPending = !mode.usesAllChannels();
+            }
+        }
+
+        /**
+         * Raises the limit so that decoding continues with the next carrier byte.
+         *
+         * @param newLimit the new total number of bytes to decode; must exceed the current size.
+         */
+        public void extendLimit(int newLimit) {
+            if (newLimit <= size) {
+                throw new IllegalArgumentException("New limit must exceed the decoded size: " + newLimit);
+            }
+            if (newLimit > buffer.length) {
+                // Grow geometrically: chunked payloads raise the limit many times in small steps
+                buffer = Arrays.copyOf(buffer, (int) Math.min(Integer.MAX_VALUE - 8,
+                        Math.max(newLimit, 2L * buffer.length)));
+            }
+            limit = newLimit;
+        }
+
+        /**
+         * Empties the buffer and continues decoding with the next carrier byte until {@code count}
+         * more bytes are decoded. Lets a listener consume a long payload piece by piece with a
+         * bounded buffer; {@link #size()} counts from zero again.
+         *
+         * @param count the number of bytes to decode before the listener is consulted again.
+         */
+        public void restart(int count) {
+            if (count <= 0) {
+                throw new IllegalArgumentException("Byte count must be positive: " + count);
+            }
+            if (count > buffer.length) {
+                buffer = new byte[count];
+            }
+            size = 0;
+            limit = count;
+        }
+
+        /**
+         * Stops decoding; {@link #isDone()} returns {@code true} from now on.
+         */
+        public void stop() {
+            done = true;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done;
+        }
+
+        /**
+         * Returns the buffer holding the decoded bytes. Only the first {@link #size()} bytes are valid.
+         *
+         * @return the internal decode buffer.
+         */
+        public byte[] buffer() {
+            return buffer;
+        }
+
+        /**
+         * Returns the number of bytes decoded so far, or since the last {@link #restart(int)}.
+         *
+         * @return the decoded byte count.
+         */
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Reads a null-terminated message, the format written before payload framing was introduced.
+     */
+    public static class NullTerminatedDecoder implements RunProcessor {
+
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private int current;
+        private int bitIndex;
+        private boolean done;
+
+        @Override
+        public void process(ByteBuffer carrier, int from, int length) {
+            int end = from + length;
+            int i = from;
+
+            if (LsbKernels.SWAR_ENABLED) {
+                // Scalar until byte-aligned, then whole bytes eight carrier bytes at a time
+                for (; i < end && !done && bitIndex != 0; i++) {
+                    decodeBit(carrier.get(i));
+                }
+                for (; end - i >= 8 && !done; i += 8) {
+                    int value = LsbKernels.extractByte(carrier, i);
+                    if (value == 0) { // Null byte marks end of text
+                        done = true;
+                    } else {
+                        output.write(value);
+                    }
+                }
+            }
+
+            for (; i < end && !done; i++) {
+                decodeBit(carrier.get(i));
+            }
+        }
+
+        private void decodeBit(byte carrierByte) {
+            current |= (carrierByte & 1) << bitIndex;
+            if (++bitIndex == 8) {
+                if (current == 0) { // Null byte marks end of text
+                    done = true;
+                } else {
+                    output.write(current);
+                }
+                current = 0;
+                bitIndex = 0;
+            }
+        }
+
+        @Override
+        public boolean isDone() {
+            return done;
+        }
+
+        /**
+         * Returns the bytes decoded so far, without the terminator.
+         *
+         * @return the decoded message bytes.
+         */
+        public byte[] toByteArray() {
+            return output.toByteArray();
+        }
+    }
+}
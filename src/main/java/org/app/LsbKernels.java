@@ -0,0 +1,197 @@
+package org.app;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Word-at-a-time (SWAR, "SIMD within a register") kernels for the LSB inner loops.
+ * <p>
+ * One payload byte occupies the least significant bits of eight consecutive carrier bytes.
+ * Instead of eight read-modify-write steps with a shift and a branch each, the kernels read the
+ * eight carrier bytes as one {@code long}, spread or gather the eight payload bits with a fixed
+ * sequence of shifts and masks, and write the word back. Bit order is identical to the scalar loops:
+ * payload bit 0 goes to the first carrier byte in file order.
+ * </p>
+ * <p>
+ * With two or four bits per carrier byte, one payload byte spans four or two carrier bytes and the
+ * same technique is applied to an {@code int} or {@code short} word.
+ * </p>
+ * <p>
+ * The kernels can be disabled with {@code -Dsteganography.lsb.kernel=scalar}, which makes
+ * {@link LsbCodec} fall back to the bit-by-bit loops. Both paths produce bit-identical output.
+ * </p>
+ */
+public class LsbKernels {
+
+    /** Whether the word-at-a-time kernels are used; controlled by the {@code steganography.lsb.kernel} property. */
+    public static final boolean SWAR_ENABLED =
+            !"scalar".equalsIgnoreCase(System.getProperty("steganography.lsb.kernel", "swar"));
+
+    /** Mask selecting the least significant bit of every byte in a word. */
+    private static final long LSB_MASK = 0x0101010101010101L;
+
+    /**
+     * Moves bit {@code j} of a byte to bit 0 of byte {@code j} of a little-endian word.
+     *
+     * @param value the payload byte; only the low 8 bits are used.
+     * @return a word whose byte {@code j} is 0 or 1.
+     */
+    static long spread(int value) {
+        long x = value & 0xFF;
+        x = (x | (x << 28)) & 0x0000000F0000000FL;
+        x = (x | (x << 14)) & 0x0003000300030003L;
+        x = (x | (x << 7)) & LSB_MASK;
+        return x;
+    }
+
+    /**
+     * Inverse of {@link #spread(int)}: collects bit 0 of each byte of a little-endian word into one byte.
+     *
+     * @param word eight carrier bytes, the first one in the low byte.
+     * @return the payload byte, between 0 and 255.
+     */
+    static int gather(long word) {
+        long x = word & LSB_MASK;
+        x = (x | (x >>> 7)) & 0x0003000300030003L;
+        x = (x | (x >>> 14)) & 0x0000000F0000000FL;
+        x = (x | (x >>> 28)) & 0xFF;
+        return (int) x;
+    }
+
+    /**
+     * Embeds one payload byte into the LSBs of eight consecutive carrier bytes.
+     *
+     * @param carrier the carrier buffer, in any byte order.
+     * @param index   the absolute index of the first of the eight carrier bytes.
+     * @param value   the payload byte.
+     */
+    static void embedByte(ByteBuffer carrier, int index, int value) {
+        boolean littleEndian = carrier.order() == ByteOrder.LITTLE_ENDIAN;
+        long word = carrier.getLong(index);
+        long bits = spread(value);
+        if (!littleEndian) {
+            bits = Long.reverseBytes(bits);
+        }
+        carrier.putLong(index, (word & ~LSB_MASK) | bits);
+    }
+
+    /**
+     * Extracts one payload byte from the LSBs of eight consecutive carrier bytes.
+     *
+     * @param carrier the carrier buffer, in any byte order.
+     * @param index   the absolute index of the first of the eight carrier bytes.
+     * @return the payload byte, between 0 and 255.
+     */
+    static int extractByte(ByteBuffer carrier, int index) {
+        long word = carrier.getLong(index);
+        if (carrier.order() != ByteOrder.LITTLE_ENDIAN) {
+            word = Long.reverseBytes(word);
+        }
+        return gather(word);
+    }
+
+    /**
+     * Moves the four 2-bit groups of a byte to the low bits of the four bytes of a little-endian int.
+     */
+    static int spread2(int value) {
+        int x = value & 0xFF;
+        x = (x | (x << 12)) & 0x000F000F;
+        x = (x | (x << 6)) & 0x03030303;
+        return x;
+    }
+
+    /**
+     * Inverse of {@link #spread2(int)}.
+     */
+    static int gather2(int word) {
+        int x = word & 0x03030303;
+        x = (x | (x >>> 6)) & 0x000F000F;
+        x = (x | (x >>> 12)) & 0xFF;
+        return x;
+    }
+
+    /**
+     * Returns whether a word-at-a-time kernel exists for the given number of bits per carrier byte.
+     *
+     * @param bitsPerChannel the bits per carrier byte.
+     * @return {@code true} for 1, 2 and 4.
+     */
+    static boolean supports(int bitsPerChannel) {
+        return bitsPerChannel == 1 || bitsPerChannel == 2 || bitsPerChannel == 4;
+    }
+
+    /**
+     * Embeds a block of payload bytes into consecutive carrier bytes, using {@code 8 / bitsPerChannel}
+     * carrier bytes per payload byte.
+     *
+     * @param carrier        the carrier buffer; must hold {@code count * 8 / bitsPerChannel} bytes from {@code index}.
+     * @param index          the absolute index of the first carrier byte.
+     * @param payload        the payload array.
+     * @param offset         the index of the first payload byte to embed.
+     * @param count          the number of payload bytes to embed.
+     * @param bitsPerChannel 1, 2 or 4.
+     */
+    static void embedBlock(ByteBuffer carrier, int index, byte[] payload, int offset, int count, int bitsPerChannel) {
+        boolean swap = carrier.order() != ByteOrder.LITTLE_ENDIAN;
+        switch (bitsPerChannel) {
+            case 1 -> {
+                for (int k = 0; k < count; k++, index += 8) {
+                    embedByte(carrier, index, payload[offset + k]);
+                }
+            }
+            case 2 -> {
+                for (int k = 0; k < count; k++, index += 4) {
+                    int bits = spread2(payload[offset + k]);
+                    int word = carrier.getInt(index);
+                    carrier.putInt(index, (word & ~0x03030303) | (swap ? Integer.reverseBytes(bits) : bits));
+                }
+            }
+            case 4 -> {
+                for (int k = 0; k < count; k++, index += 2) {
+                    int value = payload[offset + k];
+                    int bits = (value & 0x0F) | ((value & 0xF0) << 4);
+                    int word = carrier.getShort(index);
+                    short merged = (short) ((word & ~0x0F0F) | (swap ? Short.reverseBytes((short) bits) : bits));
+                    carrier.putShort(index, merged);
+                }
+            }
+            default -> throw new IllegalArgumentException("No kernel for " + bitsPerChannel + " bits per channel");
+        }
+    }
+
+    /**
+     * Extracts a block of payload bytes from consecutive carrier bytes, using {@code 8 / bitsPerChannel}
+     * carrier bytes per payload byte.
+     *
+     * @param carrier        the carrier buffer; must hold {@code count * 8 / bitsPerChannel} bytes from {@code index}.
+     * @param index          the absolute index of the first carrier byte.
+     * @param target         the array receiving the payload bytes.
+     * @param offset         the index in {@code target} of the first decoded byte.
+     * @param count          the number of payload bytes to extract.
+     * @param bitsPerChannel 1, 2 or 4.
+     */
+    static void extractBlock(ByteBuffer carrier, int index, byte[] target, int offset, int count, int bitsPerChannel) {
+        boolean swap = carrier.order() != ByteOrder.LITTLE_ENDIAN;
+        switch (bitsPerChannel) {
+            case 1 -> {
+                for (int k = 0; k < count; k++, index += 8) {
+                    target[offset + k] = (byte) extractByte(carrier, index);
+                }
+            }
+            case 2 -> {
+                for (int k = 0; k < count; k++, index += 4) {
+                    int word = carrier.getInt(index);
+                    target[offset + k] = (byte) gather2(swap ? Integer.reverseBytes(word) : word);
+                }
+            }
+            case 4 -> {
+                for (int k = 0; k < count; k++, index += 2) {
+                    short word = carrier.getShort(index);
+                    int bits = swap ? Short.reverseBytes(word) : word;
+                    target[offset + k] = (byte) ((bits & 0x0F) | ((bits >>> 4) & 0xF0));
+                }
+            }
+            default -> throw new IllegalArgumentException("No kernel for " + bitsPerChannel + " bits per channel");
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package org.app;
+
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.image.Image;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.stage.Stage;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Window showing the LSB planes of a large BMP, rendered tile by tile as the user pans and zooms.
+ * <p>
+ * Only the tiles intersecting the viewport are requested from the {@link LsbTileRenderer}, at the
+ * zoom level whose sampling is closest to one tile pixel per screen pixel without going below it.
+ * While a tile is being computed, the matching part of a coarser cached tile is drawn in its place.
+ * Tiles are drawn without smoothing so single-pixel patterns stay visible at high zoom. Closing the
+ * window closes the renderer. Must be used on the JavaFX application thread.
+ * </p>
+ */
+public class LsbPlaneViewer {
+
+    private static final Logger logger = LogManager.getLogger(LsbPlaneViewer.class);
+
+    private static final double ZOOM_STEP = 1.25;
+    private static final double MAX_ZOOM = 32;
+
+    private final LsbTileRenderer renderer;
+    private final Stage stage = new Stage();
+    private final Canvas canvas = new Canvas();
+    private final ComboBox<LsbTileRenderer.Channel> channelSelector = new ComboBox<>();
+    private final ComboBox<Integer> bitSelector = new ComboBox<>();
+    private double zoom;
+    private double originX;
+    private double originY;
+    private double dragX;
+    private double dragY;
+    private boolean redrawPending;
+    private boolean closed;
+
+    /**
+     * Creates a viewer window for a renderer; the viewer takes ownership of the renderer.
+     *
+     * @param renderer the renderer of the image to show.
+     * @param title    the window title.
+     */
+    public LsbPlaneViewer(LsbTileRenderer renderer, String title) {
+        this.renderer = renderer;
+
+        channelSelector.getItems().addAll(LsbTileRenderer.Channel.values());
+        channelSelector.setValue(LsbTileRenderer.Channel.ALL);
+        for (int bit = 0; bit < AppConstants.LSB_TILE_MAX_BITS; bit++) {
+            bitSelector.getItems().add(bit);
+        }
+        bitSelector.setValue(0);
+        channelSelector.setOnAction(event -> redraw());
+        bitSelector.setOnAction(event -> redraw());
+
+        HBox toolbar = new HBox(10, new Label(AppConstants.LSB_VIEWER_CHANNEL_LABEL), channelSelector,
+                new Label(AppConstants.LSB_VIEWER_BIT_LABEL), bitSelector, new Label(AppConstants.LSB_VIEWER_HINT));
+        toolbar.setAlignment(Pos.CENTER_LEFT);
+        toolbar.setPadding(new Insets(8));
+
+        Pane viewport = new Pane(canvas);
+        canvas.widthProperty().bind(viewport.widthProperty());
+        canvas.heightProperty().bind(viewport.heightProperty());
+        canvas.widthProperty().addListener((observable, oldValue, newValue) -> redraw());
+        canvas.heightProperty().addListener((observable, oldValue, newValue) -> redraw());
+        canvas.setOnMousePressed(this::startDrag);
+        canvas.setOnMouseDragged(this::drag);
+        canvas.setOnScroll(this::zoom);
+
+        BorderPane root = new BorderPane(viewport);
+        root.setTop(toolbar);
+        stage.setTitle(title);
+        stage.setScene(new Scene(root, 1000, 800));
+        stage.setOnHidden(event -> close());
+    }
+
+    /**
+     * Shows the window, with the whole image fitted into it.
+     */
+    public void show() {
+        stage.show();
+        BmpHeader header = renderer.getHeader();
+        zoom = Math.min(canvas.getWidth() / header.getWidth(), canvas.getHeight() / header.getHeight());
+        originX = 0;
+        originY = 0;
+        redraw();
+    }
+
+    private void startDrag(MouseEvent event) {
+        dragX = event.getX();
+        dragY = event.getY();
+    }
+
+    private void drag(MouseEvent event) {
+        originX -= (event.getX() - dragX) / zoom;
+        originY -= (event.getY() - dragY) / zoom;
+        startDrag(event);
+        redraw();
+    }
+
+    private void zoom(ScrollEvent event) {
+        if (event.getDeltaY() == 0) {
+            return;
+        }
+        BmpHeader header = renderer.getHeader();
+        double minZoom = Math.min(1, Math.min(canvas.getWidth() / header.getWidth(),
+                canvas.getHeight() / header.getHeight()));
+        double newZoom = Math.clamp(event.getDeltaY() > 0 ? zoom * ZOOM_STEP : zoom / ZOOM_STEP, minZoom, MAX_ZOOM);
+        // Keep the image point under the cursor in place
+        originX += event.getX() / zoom - event.getX() / newZoom;
+        originY += event.getY() / zoom - event.getY() / newZoom;
+        zoom = newZoom;
+        redraw();
+    }
+
+    /**
+     * Redraws the viewport once for every batch of tiles finishing in the background.
+     */
+    private void scheduleRedraw() {
+        if (!redrawPending) {
+            redrawPending = true;
+            Platform.runLater(() -> {
+                redrawPending = false;
+                redraw();
+            });
+        }
+    }
+
+    private void redraw() {
+        if (closed || zoom <= 0) {
+            return;
+        }
+        BmpHeader header = renderer.getHeader();
+        GraphicsContext graphics = canvas.getGraphicsContext2D();
+        graphics.setImageSmoothing(false);
+        graphics.setFill(Color.DIMGRAY);
+        graphics.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+
+        int level = Math.clamp((int) Math.floor(-Math.log(zoom) / Math.log(2)), 0, renderer.getMaxLevel());
+        long span = (long) AppConstants.LSB_TILE_SIZE << level;
+        int firstColumn = (int) Math.max(0, Math.floor(originX / span));
+        int firstRow = (int) Math.max(0, Math.floor(originY / span));
+        int lastColumn = (int) Math.min((header.getWidth() - 1) / span, Math.floor((originX + canvas.getWidth() / zoom) / span));
+        int lastRow = (int) Math.min((header.getHeight() - 1) / span, Math.floor((originY + canvas.getHeight() / zoom) / span));
+
+        List<LsbTileRenderer.TileKey> visible = new ArrayList<>();
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                visible.add(new LsbTileRenderer.TileKey(level, column, row, channelSelector.getValue(),
+                        bitSelector.getValue()));
+            }
+        }
+        renderer.retainRequests(visible);
+        for (LsbTileRenderer.TileKey key : visible) {
+            long x = key.column() * span;
+            long y = key.row() * span;
+            double width = Math.min(span, header.getWidth() - x);
+            double height = Math.min(span, header.getHeight() - y);
+            double screenX = (x - originX) * zoom;
+            double screenY = (y - originY) * zoom;
+            Image tile = renderer.getCached(key);
+            if (tile != null) {
+                graphics.drawImage(tile, screenX, screenY, width * zoom, height * zoom);
+                continue;
+            }
+            renderer.request(key, ready -> Platform.runLater(this::scheduleRedraw));
+            drawCoarser(graphics, key, x, y, width, height, screenX, screenY);
+        }
+    }
+
+    /**
+     * Draws the part of the closest cached coarser tile covering a tile that is not ready yet.
+     */
+    private void drawCoarser(GraphicsContext graphics, LsbTileRenderer.TileKey key, long x, long y,
+                             double width, double height, double screenX, double screenY) {
+        for (int level = key.level() + 1; level <= renderer.getMaxLevel(); level++) {
+            long span = (long) AppConstants.LSB_TILE_SIZE << level;
+            Image tile = renderer.getCached(new LsbTileRenderer.TileKey(level, (int) (x / span), (int) (y / span),
+                    key.channel(), key.bit()));
+            if (tile != null) {
+                double scale = 1.0 / (1L << level);
+                graphics.drawImage(tile, (x % span) * scale, (y % span) * scale, width * scale, height * scale,
+                        screenX, screenY, width * zoom, height * zoom);
+                return;
+            }
+        }
+    }
+
+    private void close() {
+        closed = true;
+        try {
+            renderer.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close LSB tile renderer", e);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package org.app;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Renders the LSB planes of a BMP file as square tiles, for viewing carriers too large to hold as
+ * a single image.
+ * <p>
+ * A tile covers {@link AppConstants#LSB_TILE_SIZE} pixels on a side at a zoom <em>level</em>: at level
+ * {@code n}, each tile pixel samples one carrier pixel out of every {@code 2^n} in each direction. Pixels
+ * are sampled rather than averaged, since averaging bits would hide the patterns the view is meant to
+ * show. Only the rows a tile samples are read, and only the span of each row it covers, so the cost
+ * of a tile does not depend on the image size.
+ * </p>
+ * <p>
+ * Tiles are computed on a small pool of background threads ({@link AppConstants#LSB_TILE_THREADS}) and
+ * kept in an LRU cache of {@link AppConstants#LSB_TILE_CACHE_TILES} tiles. Requests for tiles that have
+ * scrolled out of view before a thread picks them up are dropped. Supports uncompressed 8-, 24- and
+ * 32-bit BMPs; the plane of an 8-bit image is that of its palette indices. An instance is thread-safe.
+ * </p>
+ */
+public class LsbTileRenderer implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(LsbTileRenderer.class);
+
+    /**
+     * Colour channel whose bit plane is shown.
+     */
+    public enum Channel {
+        /** Each channel shows its own bit, as in {@link ImageCryptoTools#performVisualAttack(Image)}. */
+        ALL(-1),
+        /** The red channel, in grey levels. */
+        RED(2),
+        /** The green channel, in grey levels. */
+        GREEN(1),
+        /** The blue channel, in grey levels. */
+        BLUE(0);
+
+        private final int byteOffset;
+
+        Channel(int byteOffset) {
+            this.byteOffset = byteOffset;
+        }
+    }
+
+    /**
+     * Identifies a tile: its zoom level, position in tiles, and the plane it shows.
+     */
+    record TileKey(int level, int column, int row, Channel channel, int bit) {
+        TileKey {
+            if (bit < 0 || bit >= AppConstants.LSB_TILE_MAX_BITS) {
+                throw new IllegalArgumentException("Bit plane must be between 0 and "
+                        + (AppConstants.LSB_TILE_MAX_BITS - 1) + ": " + bit);
+            }
+        }
+    }
+
+    private final BmpHeader header;
+    private final FileChannel file;
+    private final ExecutorService executor;
+    private final Map<TileKey, Image> tiles = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TileKey, Image> eldest) {
+            return size() > AppConstants.LSB_TILE_CACHE_TILES;
+        }
+    };
+    private final Set<TileKey> pending = new HashSet<>();
+
+    /**
+     * Opens a BMP file for tile rendering.
+     *
+     * @param path the BMP file.
+     * @throws IOException if the file cannot be read or is not an uncompressed 8-, 24- or 32-bit BMP.
+     */
+    public LsbTileRenderer(Path path) throws IOException {
+        this.file = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.header = BmpHeader.read(file);
+            if (!supports(header)) {
+                throw new IOException("LSB tiles need an uncompressed 8-, 24- or 32-bit BMP");
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(AppConstants.LSB_TILE_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "lsb-tile-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns whether tiles can be rendered for a BMP: uncompressed, with 8, 24 or 32 bits per pixel.
+     *
+     * @param header the BMP header, or {@code null}.
+     * @return {@code true} if the file can be opened by this renderer.
+     */
+    static boolean supports(BmpHeader header) {
+        return header != null && header.getCompression() == BmpHeader.BI_RGB
+                && header.getBitCount() >= 8 && header.getBitCount() != 16;
+    }
+
+    /**
+     * Returns the header of the rendered file.
+     *
+     * @return the BMP header.
+     */
+    public BmpHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns the coarsest useful zoom level: the one at which the whole image fits in one tile.
+     *
+     * @return the highest level.
+     */
+    public int getMaxLevel() {
+        int level = 0;
+        while ((Math.max(header.getWidth(), header.getHeight()) - 1 >> level) >= AppConstants.LSB_TILE_SIZE) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Returns a tile if it is in the cache.
+     *
+     * @param key the tile.
+     * @return the tile image, or {@code null} if it has not been computed.
+     */
+    Image getCached(TileKey key) {
+        synchronized (tiles) {
+            return tiles.get(key);
+        }
+    }
+
+    /**
+     * Computes a tile in the background unless it is cached or already requested.
+     *
+     * @param key     the tile.
+     * @param onReady receives the tile on a background thread once computed.
+     */
+    void request(TileKey key, Consumer<Image> onReady) {
+        synchronized (tiles) {
+            if (tiles.containsKey(key) || !pending.add(key)) {
+                return;
+            }
+        }
+        executor.execute(() -> {
+            synchronized (tiles) {
+                if (!pending.contains(key)) {
+                    return; // scrolled out of view before it was computed
+                }
+            }
+            try {
+                Image tile;
+                try (Metrics.Sample sample = Metrics.start(Metrics.Stage.VISUAL_ATTACK)) {
+                    tile = render(key);
+                    sample.addBytes(4L * (long) tile.getWidth() * (long) tile.getHeight());
+                }
+                synchronized (tiles) {
+                    pending.remove(key);
+                    tiles.put(key, tile);
+                }
+                onReady.accept(tile);
+            } catch (IOException e) {
+                synchronized (tiles) {
+                    pending.remove(key);
+                }
+                logger.error("Failed to render LSB tile {}", key, e);
+            }
+        });
+    }
+
+    /**
+     * Drops pending requests for tiles that are no longer visible.
+     *
+     * @param visible the tiles still wanted.
+     */
+    void retainRequests(Collection<TileKey> visible) {
+        synchronized (tiles) {
+            pending.retainAll(visible);
+        }
+    }
+
+    /**
+     * Computes a tile on the calling thread, sampling the rows it covers from the file.
+     *
+     * @param key the tile.
+     * @return the tile image, at most {@link AppConstants#LSB_TILE_SIZE} pixels on a side.
+     * @throws IOException if the file cannot be read.
+     */
+    Image render(TileKey key) throws IOException {
+        int step = 1 << key.level();
+        int span = AppConstants.LSB_TILE_SIZE * step;
+        int firstColumn = key.column() * span;
+        int firstRow = key.row() * span;
+        int width = Math.min(AppConstants.LSB_TILE_SIZE, (header.getWidth() - firstColumn + step - 1) / step);
+        int height = Math.min(AppConstants.LSB_TILE_SIZE, (header.getHeight() - firstRow + step - 1) / step);
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Tile outside the image: " + key);
+        }
+
+        int bytesPerPixel = header.getBytesPerPixel();
+        int bit = key.bit();
+        ByteBuffer buffer = ByteBuffer.allocate(((width - 1) * step + 1) * bytesPerPixel);
+        int[] pixels = new int[width];
+        WritableImage tile = new WritableImage(width, height);
+        for (int y = 0; y < height; y++) {
+            int imageRow = firstRow + y * step;
+            int fileRow = header.isTopDown() ? imageRow : header.getHeight() - 1 - imageRow;
+            long position = header.getPixelDataOffset() + (long) fileRow * header.getRowStride()
+                    + (long) firstColumn * bytesPerPixel;
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                if (file.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException("Unexpected end of file while reading BMP pixel data");
+                }
+            }
+
+            byte[] bytes = buffer.array();
+            for (int x = 0; x < width; x++) {
+                int offset = x * step * bytesPerPixel;
+                int plane;
+                if (bytesPerPixel == 1) {
+                    plane = (bytes[offset] >> bit & 1) * 0xFFFFFF;
+                } else if (key.channel() == Channel.ALL) {
+                    plane = ((bytes[offset + 2] >> bit & 1) << 16 | (bytes[offset + 1] >> bit & 1) << 8
+                            | (bytes[offset] >> bit & 1)) * 0xFF;
+                } else {
+                    plane = (bytes[offset + key.channel().byteOffset] >> bit & 1) * 0xFFFFFF;
+                }
+                pixels[x] = 0xFF000000 | plane;
+            }
+            tile.getPixelWriter().setPixels(0, y, width, 1, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        }
+        return tile;
+    }
+
+    /**
+     * Stops the background threads and closes the file.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        synchronized (tiles) {
+            tiles.clear();
+            pending.clear();
+        }
+        file.close();
+    }
+}
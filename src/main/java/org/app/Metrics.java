@@ -0,0 +1,189 @@
+package org.app;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Timing, byte and allocation instrumentation of the processing stages, reported to a pluggable
+ * {@link Registry}.
+ * <p>
+ * Each instrumented operation opens a {@link Sample} for its stage in a try-with-resources block
+ * and records how many bytes it processed; closing the sample reports the elapsed time, the bytes
+ * and the bytes allocated by the calling thread. No registry is installed by default: every
+ * operation then shares one inert sample, so the instrumentation costs one volatile read and does
+ * not read the clock or allocate. Stages nest: the time of an embed includes the header parse it
+ * performs, which is also recorded under its own stage.
+ * </p>
+ * <p>
+ * Running with {@code -Dsteganography.metrics=jmx} installs a {@link StageMetrics} registry,
+ * published as the {@value StageMetrics#OBJECT_NAME} MBean (see {@link #configure()}). Allocation is
+ * only counted on the thread that opened the sample, so bytes allocated by parallel bands on other
+ * threads are not included.
+ * </p>
+ */
+public final class Metrics {
+
+    private static final Logger logger = LogManager.getLogger(Metrics.class);
+
+    /**
+     * Instrumented processing stage.
+     */
+    public enum Stage {
+        /** Full-resolution image decoding; bytes are the size of the image file. */
+        DECODE,
+        /** BMP header reading and parsing; bytes are the header bytes read. */
+        HEADER_PARSE,
+        /** Payload embedding; bytes are the size of the carrier. */
+        EMBED,
+        /** Payload extraction; bytes are the size of the carrier. */
+        EXTRACT,
+        /** LSB-plane visual attack; bytes are the ARGB pixel bytes processed. */
+        VISUAL_ATTACK,
+        /** Colour census behind the image statistics; bytes are the ARGB pixel bytes processed. */
+        STATISTICS,
+        /** Chi-square, RS and sample pair analysis; bytes are the pixel bytes processed. */
+        STEGANALYSIS
+    }
+
+    /**
+     * Receives the measurements of completed samples. Implementations must be thread-safe.
+     */
+    @FunctionalInterface
+    public interface Registry {
+
+        /**
+         * Records one completed operation.
+         *
+         * @param stage          the stage the operation belongs to.
+         * @param nanos          the elapsed wall-clock time in nanoseconds.
+         * @param bytes          the bytes processed, as defined by the stage; 0 if not known.
+         * @param allocatedBytes the bytes allocated by the calling thread, or -1 if not measurable.
+         */
+        void record(Stage stage, long nanos, long bytes, long allocatedBytes);
+    }
+
+    /**
+     * A measurement in progress, reported to the registry when closed.
+     */
+    public static final class Sample implements AutoCloseable {
+
+        private static final Sample NONE = new Sample(null, null, 0, 0);
+
+        private final Registry registry;
+        private final Stage stage;
+        private final long start;
+        private final long startAllocated;
+        private long bytes;
+
+        private Sample(Registry registry, Stage stage, long start, long startAllocated) {
+            this.registry = registry;
+            this.stage = stage;
+            this.start = start;
+            this.startAllocated = startAllocated;
+        }
+
+        /**
+         * Adds to the bytes processed by the operation.
+         *
+         * @param count the number of bytes.
+         * @return this sample.
+         */
+        public Sample addBytes(long count) {
+            if (registry != null) {
+                bytes += count;
+            }
+            return this;
+        }
+
+        /**
+         * Reports the elapsed time, bytes and allocation of the operation.
+         */
+        @Override
+        public void close() {
+            if (registry != null) {
+                long endAllocated = startAllocated < 0 ? -1 : Allocation.currentThread();
+                registry.record(stage, System.nanoTime() - start, bytes,
+                        endAllocated < 0 ? -1 : endAllocated - startAllocated);
+            }
+        }
+    }
+
+    private static volatile Registry registry;
+
+    private Metrics() {
+    }
+
+    /**
+     * Installs the registry named by the {@code steganography.metrics} property: {@code jmx} for a
+     * {@link StageMetrics} published over JMX; anything else leaves metrics disabled.
+     */
+    public static void configure() {
+        String kind = System.getProperty("steganography.metrics");
+        if ("jmx".equalsIgnoreCase(kind)) {
+            install(StageMetrics.registerPlatform());
+            logger.info("Stage metrics published as {}", StageMetrics.OBJECT_NAME);
+        } else if (kind != null && !kind.isBlank()) {
+            logger.warn("Unknown metrics registry {}; metrics disabled", kind);
+        }
+    }
+
+    /**
+     * Installs the registry receiving every sample, replacing the previous one.
+     *
+     * @param newRegistry the registry, or {@code null} to disable metrics.
+     */
+    public static void install(Registry newRegistry) {
+        registry = newRegistry;
+    }
+
+    /**
+     * Returns the installed registry.
+     *
+     * @return the registry, or {@code null} if metrics are disabled.
+     */
+    public static Registry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Starts measuring an operation of a stage.
+     *
+     * @param stage the stage.
+     * @return the sample to close when the operation ends; inert if metrics are disabled.
+     */
+    public static Sample start(Stage stage) {
+        Registry current = registry;
+        if (current == null) {
+            return Sample.NONE;
+        }
+        return new Sample(current, stage, System.nanoTime(), Allocation.currentThread());
+    }
+
+    /**
+     * Per-thread allocation counter, loaded with the management classes only once metrics are enabled.
+     */
+    private static final class Allocation {
+
+        private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+        /**
+         * Returns the bytes allocated so far by the calling thread, or -1 if the JVM does not count them.
+         */
+        static long currentThread() {
+            return THREADS == null ? -1 : Math.max(-1, THREADS.getCurrentThreadAllocatedBytes());
+        }
+
+        private static com.sun.management.ThreadMXBean threads() {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean allocation
+                    && allocation.isThreadAllocatedMemorySupported()) {
+                allocation.setThreadAllocatedMemoryEnabled(true);
+                return allocation;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package org.app;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Password-based authenticated encryption of payloads with AES-GCM.
+ * <p>
+ * Keys are derived from the password with PBKDF2 (HMAC-SHA256, {@link AppConstants#KEY_DERIVATION_ITERATIONS}
+ * iterations), which is deliberately slow. Each instance therefore picks one random salt when it is
+ * created and uses it for every payload it encrypts, so embedding into thousands of files derives the
+ * key once; every payload still gets its own random IV. Keys derived for the salts of extracted payloads
+ * are kept in a bounded LRU cache ({@link AppConstants#KEY_CACHE_SIZE} entries), so a batch embedded with
+ * one passphrase is also extracted with a single key derivation. An instance is thread-safe.
+ * </p>
+ * <p>
+ * An encrypted payload, stored with {@link PayloadFrame#FLAG_ENCRYPTED}, is laid out as:
+ * </p>
+ * <pre>
+ * offset  size  field
+ *      0    16  PBKDF2 salt
+ *     16    12  GCM IV
+ *     28     n  ciphertext followed by the 16-byte GCM tag
+ * </pre>
+ * <p>
+ * The tag authenticates the payload: a wrong password or a modified payload is rejected instead of
+ * producing garbage.
+ * </p>
+ * <p>
+ * The same password also keys the pixel order of scattered embedding, see {@link #scatterKey()}.
+ * </p>
+ */
+public class PayloadCipher {
+
+    /** Size of the PBKDF2 salt in bytes. */
+    public static final int SALT_SIZE = 16;
+
+    /** Size of the GCM IV in bytes. */
+    public static final int IV_SIZE = 12;
+
+    /** Size of the GCM authentication tag in bytes. */
+    public static final int TAG_SIZE = 16;
+
+    /** Number of bytes encryption adds to a payload. */
+    public static final int OVERHEAD = SALT_SIZE + IV_SIZE + TAG_SIZE;
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String KEY_DERIVATION = "PBKDF2WithHmacSHA256";
+    private static final int KEY_BITS = 256;
+
+    /** Fixed salt separating the scatter key from encryption keys; it must be known before the payload is read. */
+    private static final byte[] SCATTER_SALT = "STEG scatter key".getBytes(StandardCharsets.US_ASCII);
+
+    private final SecureRandom random = new SecureRandom();
+    private final char[] password;
+    private final byte[] salt = new byte[SALT_SIZE];
+    private final Map<String, DerivedKey> keys = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DerivedKey> eldest) {
+            return size() > AppConstants.KEY_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Creates a cipher for the given password.
+     *
+     * @param password the password; copied, so the caller may clear its array.
+     * @throws IllegalArgumentException if the password is empty.
+     */
+    public PayloadCipher(char[] password) {
+        if (password.length == 0) {
+            throw new IllegalArgumentException("Password must not be empty");
+        }
+        this.password = password.clone();
+        random.nextBytes(salt);
+    }
+
+    /**
+     * Encrypts a payload.
+     *
+     * @param payload the payload, usually already compressed.
+     * @return the salt, IV, ciphertext and tag, {@link #OVERHEAD} bytes longer than the payload.
+     * @throws IOException if the JDK provides no AES-GCM or PBKDF2 implementation.
+     */
+    public byte[] encrypt(byte[] payload) throws IOException {
+        byte[] iv = new byte[IV_SIZE];
+        random.nextBytes(iv);
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key(salt), new GCMParameterSpec(TAG_SIZE * 8, iv));
+            ByteBuffer output = ByteBuffer.allocate(SALT_SIZE + IV_SIZE + cipher.getOutputSize(payload.length));
+            output.put(salt).put(iv);
+            cipher.doFinal(ByteBuffer.wrap(payload), output);
+            return output.array();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Payload encryption failed", e);
+        }
+    }
+
+    /**
+     * Starts encrypting one payload fed in pieces, for payloads whose length is not known in advance.
+     *
+     * @return a new encryption.
+     * @throws IOException if the JDK provides no AES-GCM or PBKDF2 implementation.
+     */
+    public Encryption newEncryption() throws IOException {
+        byte[] iv = new byte[IV_SIZE];
+        random.nextBytes(iv);
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key(salt), new GCMParameterSpec(TAG_SIZE * 8, iv));
+            return new Encryption(cipher, iv);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Payload encryption failed", e);
+        }
+    }
+
+    /**
+     * Starts decrypting one payload fed in pieces.
+     *
+     * @return a new decryption.
+     */
+    public Decryption newDecryption() {
+        return new Decryption();
+    }
+
+    /**
+     * Returns the key of the pixel permutation used for scattered embedding.
+     * <p>
+     * It is derived from the password with a fixed salt, since it is needed to find the payload
+     * before its salt can be read; like other keys, it is derived once and then cached.
+     * </p>
+     *
+     * @return the permutation key for {@link ScatteredCarrier}.
+     * @throws IOException if the JDK provides no PBKDF2 implementation.
+     */
+    public long scatterKey() throws IOException {
+        try {
+            return ByteBuffer.wrap(key(SCATTER_SALT).getEncoded()).getLong();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Scatter key derivation failed", e);
+        }
+    }
+
+    private SecretKey key(byte[] salt) throws GeneralSecurityException {
+        DerivedKey derived;
+        synchronized (keys) {
+            derived = keys.computeIfAbsent(HexFormat.of().formatHex(salt), hex -> new DerivedKey(salt.clone()));
+        }
+        return derived.get();
+    }
+
+    /**
+     * A cache entry; the key is derived on first use, outside the cache lock, so threads waiting for
+     * one salt do not block lookups of others.
+     */
+    private class DerivedKey {
+
+        private final byte[] salt;
+        private SecretKey key;
+
+        DerivedKey(byte[] salt) {
+            this.salt = salt;
+        }
+
+        synchronized SecretKey get() throws GeneralSecurityException {
+            if (key == null) {
+                PBEKeySpec spec = new PBEKeySpec(password, salt, AppConstants.KEY_DERIVATION_ITERATIONS, KEY_BITS);
+                try {
+                    byte[] encoded = SecretKeyFactory.getInstance(KEY_DERIVATION).generateSecret(spec).getEncoded();
+                    key = new SecretKeySpec(encoded, "AES");
+                    Arrays.fill(encoded, (byte) 0);
+                } finally {
+                    spec.clearPassword();
+                }
+            }
+            return key;
+        }
+    }
+
+    /**
+     * Encrypts one payload fed in pieces of any size. The concatenated output has the same layout
+     * as the result of {@link #encrypt(byte[])}.
+     */
+    public class Encryption {
+
+        private final Cipher cipher;
+        private byte[] prefix;
+
+        private Encryption(Cipher cipher, byte[] iv) {
+            this.cipher = cipher;
+            this.prefix = ByteBuffer.allocate(SALT_SIZE + IV_SIZE).put(salt).put(iv).array();
+        }
+
+        /**
+         * Feeds the next piece of the payload.
+         *
+         * @param data   the buffer holding the piece.
+         * @param offset the offset of the piece in the buffer.
+         * @param length the length of the piece.
+         * @return encrypted bytes that are already available, preceded by the salt and IV on the first call.
+         */
+        public byte[] update(byte[] data, int offset, int length) {
+            byte[] encrypted = cipher.update(data, offset, length);
+            return withPrefix(encrypted != null ? encrypted : new byte[0]);
+        }
+
+        /**
+         * Completes the encryption once the whole payload has been fed.
+         *
+         * @return the remaining ciphertext and the tag.
+         * @throws IOException if the JDK's AES-GCM implementation fails.
+         */
+        public byte[] finish() throws IOException {
+            try {
+                return withPrefix(cipher.doFinal());
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Payload encryption failed", e);
+            }
+        }
+
+        private byte[] withPrefix(byte[] encrypted) {
+            if (prefix == null) {
+                return encrypted;
+            }
+            byte[] output = ByteBuffer.allocate(prefix.length + encrypted.length).put(prefix).put(encrypted).array();
+            prefix = null;
+            return output;
+        }
+    }
+
+    /**
+     * Decrypts one encrypted payload fed in pieces of any size.
+     * <p>
+     * The salt and IV are collected from the first bytes; plaintext may only become available from
+     * {@link #finish()}, once the tag has been verified.
+     * </p>
+     */
+    public class Decryption {
+
+        private final byte[] prefix = new byte[SALT_SIZE + IV_SIZE];
+        private int prefixSize;
+        private Cipher cipher;
+
+        private Decryption() {
+        }
+
+        /**
+         * Feeds the next piece of the encrypted payload.
+         *
+         * @param data   the buffer holding the piece.
+         * @param offset the offset of the piece in the buffer.
+         * @param length the length of the piece.
+         * @return plaintext that is already available, possibly empty.
+         * @throws IOException if the JDK provides no AES-GCM or PBKDF2 implementation.
+         */
+        public byte[] update(byte[] data, int offset, int length) throws IOException {
+            if (cipher == null) {
+                int count = Math.min(length, prefix.length - prefixSize);
+                System.arraycopy(data, offset, prefix, prefixSize, count);
+                prefixSize += count;
+                offset += count;
+                length -= count;
+                if (prefixSize < prefix.length) {
+                    return new byte[0];
+                }
+                try {
+                    cipher = Cipher.getInstance(TRANSFORMATION);
+                    cipher.init(Cipher.DECRYPT_MODE, key(Arrays.copyOf(prefix, SALT_SIZE)),
+                            new GCMParameterSpec(TAG_SIZE * 8, prefix, SALT_SIZE, IV_SIZE));
+                } catch (GeneralSecurityException e) {
+                    throw new IOException("Payload decryption failed", e);
+                }
+            }
+            byte[] plain = cipher.update(data, offset, length);
+            return plain != null ? plain : new byte[0];
+        }
+
+        /**
+         * Verifies the tag once the whole encrypted payload has been fed.
+         *
+         * @return the remaining plaintext.
+         * @throws IOException if the password is wrong, or the payload was modified or is too short.
+         */
+        public byte[] finish() throws IOException {
+            if (cipher == null) {
+                throw new IOException("Encrypted payload is truncated");
+            }
+            try {
+                return cipher.doFinal();
+            } catch (AEADBadTagException e) {
+                throw new IOException("Wrong password or corrupted payload", e);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Payload decryption failed", e);
+            }
+        }
+    }
+}
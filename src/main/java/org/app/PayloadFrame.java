@@ -0,0 +1,604 @@
+package org.app;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Versioned header written in front of every embedded payload.
+ * <p>
+ * The header lets extraction know the exact payload size before decoding it, reject images that
+ * carry no payload after decoding only the four magic bytes, and carry arbitrary binary data,
+ * including zero bytes. Layout (20 bytes, little-endian):
+ * </p>
+ * <pre>
+ * offset  size  field
+ *      0     4  magic "STEG"
+ *      4     1  format version
+ *      5     1  flags
+ *      6     1  embedding mode, see {@link EmbeddingMode#toModeByte()}
+ *      7     1  reserved (0)
+ *      8     4  payload length in bytes
+ *     12     4  CRC-32C of the payload
+ *     16     4  payload size once decrypted and inflated
+ * </pre>
+ * <p>
+ * The header is always embedded one bit per carrier byte over all channels, so it can be read
+ * before the mode of the payload is known; the payload follows in the mode recorded in the header.
+ * </p>
+ * <p>
+ * A payload whose length is not known in advance, e.g. one read from a pipe, is written as a
+ * <em>chunked</em> frame: the header carries {@link #FLAG_CHUNKED} with length, CRC and size set to 0,
+ * and the payload follows as a sequence of chunks, each a 2-byte little-endian length (1 to
+ * {@link #MAX_CHUNK_SIZE}) followed by that many bytes. A zero length ends the sequence and is
+ * followed by the 4-byte CRC-32C of the whole payload.
+ * </p>
+ * <p>
+ * A payload carrying {@link #FLAG_COMPRESSED} is stored as a zlib (Deflate) stream; length and CRC
+ * then describe the stored, compressed bytes, and {@link Reader} inflates them transparently. The
+ * size field bounds the inflated output, so a crafted stream cannot expand without limit; chunked
+ * frames, whose size is not known in advance, cannot be compressed.
+ * A payload carrying {@link #FLAG_ENCRYPTED} is stored as produced by {@link PayloadCipher#encrypt(byte[])};
+ * it is compressed before it is encrypted, so both flags can be set.
+ * </p>
+ */
+public class PayloadFrame {
+
+    /** Size of the frame header in bytes. */
+    public static final int HEADER_SIZE = 20;
+
+    /** Current frame format version. */
+    public static final int VERSION = 2;
+
+    /** Flag bit marking a chunked frame, whose payload length is not recorded in the header. */
+    public static final int FLAG_CHUNKED = 1;
+
+    /** Flag bit marking a payload stored as a zlib (Deflate) stream, see {@link #deflate(byte[])}. */
+    public static final int FLAG_COMPRESSED = 2;
+
+    /** Flag bit marking a payload encrypted with {@link PayloadCipher}. */
+    public static final int FLAG_ENCRYPTED = 4;
+
+    /** Payloads shorter than this are never compressed: the zlib overhead alone would outweigh any gain. */
+    public static final int MIN_COMPRESSIBLE_SIZE = 64;
+
+    /** Largest number of payload bytes in one chunk of a chunked frame. */
+    public static final int MAX_CHUNK_SIZE = 0xFFFF;
+
+    /** Size of the length field in front of every chunk. */
+    public static final int CHUNK_LENGTH_SIZE = 2;
+
+    /** Size of the end-of-chunks marker plus the CRC that closes a chunked frame. */
+    public static final int TRAILER_SIZE = CHUNK_LENGTH_SIZE + 4;
+
+    private static final byte[] MAGIC = {'S', 'T', 'E', 'G'};
+
+    private final int version;
+    private final int flags;
+    private final int mode;
+    private final int length;
+    private final int checksum;
+    private final int payloadSize;
+
+    private PayloadFrame(int version, int flags, int mode, int length, int checksum, int payloadSize) {
+        this.version = version;
+        this.flags = flags;
+        this.mode = mode;
+        this.length = length;
+        this.checksum = checksum;
+        this.payloadSize = payloadSize;
+    }
+
+    /**
+     * Builds the header bytes for a payload.
+     *
+     * @param payload     the stored payload that will follow the header.
+     * @param payloadSize the size of the payload once decrypted and inflated.
+     * @param flags       the flag bits to record.
+     * @param mode        the mode the payload is embedded in.
+     * @return the encoded header, {@link #HEADER_SIZE} bytes long.
+     */
+    public static byte[] header(byte[] payload, int payloadSize, int flags, EmbeddingMode mode) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC)
+                .put((byte) VERSION)
+                .put((byte) flags)
+                .put((byte) mode.toModeByte())
+                .put((byte) 0)
+                .putInt(payload.length)
+                .putInt(checksum(payload, 0, payload.length))
+                .putInt(payloadSize);
+        return header.array();
+    }
+
+    /**
+     * Builds the header bytes for a chunked frame, whose payload length is not known yet.
+     *
+     * @param flags additional flag bits to record; {@link #FLAG_CHUNKED} is always set.
+     * @param mode  the mode the chunks are embedded in.
+     * @return the encoded header, {@link #HEADER_SIZE} bytes long.
+     */
+    public static byte[] chunkedHeader(int flags, EmbeddingMode mode) {
+        // Length and size 0, and the CRC-32C of no bytes is 0
+        return header(new byte[0], 0, flags | FLAG_CHUNKED, mode);
+    }
+
+    /**
+     * Builds the length field written in front of a chunk.
+     *
+     * @param length the chunk length, between 1 and {@link #MAX_CHUNK_SIZE}.
+     * @return the 2-byte little-endian length.
+     * @throws IllegalArgumentException if the length is out of range.
+     */
+    public static byte[] chunkLength(int length) {
+        if (length < 1 || length > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Invalid chunk length: " + length);
+        }
+        return new byte[]{(byte) length, (byte) (length >>> 8)};
+    }
+
+    /**
+     * Builds the trailer that closes a chunked frame: a zero chunk length and the payload CRC.
+     *
+     * @param checksum the CRC-32C of the whole payload, e.g. from {@link CRC32C#getValue()}.
+     * @return the encoded trailer, {@link #TRAILER_SIZE} bytes long.
+     */
+    public static byte[] trailer(long checksum) {
+        return ByteBuffer.allocate(TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                .putShort((short) 0)
+                .putInt((int) checksum)
+                .array();
+    }
+
+    /**
+     * Compresses a payload with Deflate if that makes it smaller.
+     * <p>
+     * The output buffer is one byte shorter than the payload, so compression of incompressible data
+     * (already compressed or encrypted files) is abandoned as soon as it stops paying off.
+     * </p>
+     *
+     * @param payload the payload to compress.
+     * @return the zlib stream to store with {@link #FLAG_COMPRESSED}, or {@code null} if it would not
+     *         be smaller than the payload.
+     */
+    public static byte[] deflate(byte[] payload) {
+        if (payload.length < MIN_COMPRESSIBLE_SIZE) {
+            return null;
+        }
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(payload);
+            deflater.finish();
+            byte[] compressed = new byte[payload.length - 1];
+            int length = 0;
+            while (!deflater.finished() && length < compressed.length) {
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            return deflater.finished() ? Arrays.copyOf(compressed, length) : null;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Parses a header from the start of the given bytes.
+     *
+     * @param data at least {@link #HEADER_SIZE} bytes starting with the magic.
+     * @return the parsed header.
+     * @throws IOException if the magic is missing or the version is not supported.
+     */
+    public static PayloadFrame parse(byte[] data) throws IOException {
+        if (data.length < HEADER_SIZE || !hasMagic(data)) {
+            throw new IOException("No payload header found");
+        }
+        ByteBuffer header = ByteBuffer.wrap(data, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        int version = header.get(4) & 0xFF;
+        if (version != VERSION) {
+            throw new IOException("Unsupported payload format version: " + version);
+        }
+        int length = header.getInt(8);
+        if (length < 0) {
+            throw new IOException("Invalid payload length: " + Integer.toUnsignedString(length));
+        }
+        int payloadSize = header.getInt(16);
+        if (payloadSize < 0) {
+            throw new IOException("Invalid payload size: " + Integer.toUnsignedString(payloadSize));
+        }
+        return new PayloadFrame(version, header.get(5) & 0xFF, header.get(6) & 0xFF, length, header.getInt(12),
+                payloadSize);
+    }
+
+    /**
+     * Checks whether the given bytes start with the frame magic.
+     *
+     * @param data the bytes to check.
+     * @return {@code true} if at least four bytes are present and they match the magic.
+     */
+    public static boolean hasMagic(byte[] data) {
+        return data.length >= MAGIC.length && Arrays.equals(data, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    private static int checksum(byte[] data, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Returns the format version of this header.
+     *
+     * @return the version.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the flag bits of this header.
+     *
+     * @return the flags.
+     */
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * Returns the embedding mode byte of this header.
+     *
+     * @return the mode.
+     */
+    public int getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns whether this header starts a chunked frame.
+     *
+     * @return {@code true} if {@link #FLAG_CHUNKED} is set.
+     */
+    public boolean isChunked() {
+        return (flags & FLAG_CHUNKED) != 0;
+    }
+
+    /**
+     * Returns whether the payload following this header is compressed.
+     *
+     * @return {@code true} if {@link #FLAG_COMPRESSED} is set.
+     */
+    public boolean isCompressed() {
+        return (flags & FLAG_COMPRESSED) != 0;
+    }
+
+    /**
+     * Returns whether the payload following this header is encrypted.
+     *
+     * @return {@code true} if {@link #FLAG_ENCRYPTED} is set.
+     */
+    public boolean isEncrypted() {
+        return (flags & FLAG_ENCRYPTED) != 0;
+    }
+
+    /**
+     * Returns the payload length announced by this header.
+     *
+     * @return the payload length in bytes.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the size of the payload once decrypted and inflated, as announced by this header.
+     *
+     * @return the payload size in bytes, or 0 for a chunked frame.
+     */
+    public int getPayloadSize() {
+        return payloadSize;
+    }
+
+    /**
+     * Decodes a framed payload and writes the payload bytes to a stream as soon as they are decoded.
+     * <p>
+     * The reader owns an {@link LsbCodec.Decoder} to be driven over the carrier. It reads the magic
+     * first and stops immediately if it is absent, so a carrier without a payload costs 32 carrier
+     * bytes. Otherwise it reads the rest of the header, switches to the embedding mode recorded there
+     * and decodes the payload in pieces of at most {@link AppConstants#STREAM_CHUNK_BYTES} bytes,
+     * or one chunk at a time for chunked frames, so memory use does not depend on the payload size.
+     * </p>
+     * <p>
+     * Encrypted payloads are decrypted and compressed payloads are inflated on the fly, so the sink
+     * always receives the original bytes. Inflation fails as soon as it produces more bytes than the
+     * header announces. Encrypted payloads are only written once their GCM tag has been verified,
+     * which requires buffering them. The reader must be closed to release its inflater.
+     * The checksum can only be verified once the whole payload has been decoded: when
+     * {@link #finish()} reports a corrupted payload, the bytes already written must be discarded.
+     * </p>
+     */
+    public static final class Reader implements LsbCodec.Decoder.Listener, AutoCloseable {
+
+        private enum State { MAGIC, HEADER, BODY, CHUNK_LENGTH, CHUNK, TRAILER, SCATTERED, COMPLETE, ABSENT }
+
+        private final BmpHeader image;
+        private final OutputStream sink;
+        private final PayloadCipher cipher;
+        private final LsbCodec.Decoder decoder;
+        private final CRC32C crc = new CRC32C();
+        private State state = State.MAGIC;
+        private PayloadFrame frame;
+        private EmbeddingMode mode;
+        private long maxBodySize;
+        private long bodySize;
+        private long remaining;
+        private long written;
+        private long produced;
+        private PayloadCipher.Decryption decryption;
+        private Inflater inflater;
+        private byte[] inflated;
+        private IOException failure;
+
+        /**
+         * Creates a reader for a carrier with the given header.
+         *
+         * @param image the BMP header of the carrier.
+         * @param sink  receives the payload bytes; not closed by the reader.
+         */
+        public Reader(BmpHeader image, OutputStream sink) {
+            this(image, sink, null);
+        }
+
+        /**
+         * Creates a reader for a carrier with the given header that can decrypt encrypted payloads.
+         *
+         * @param image  the BMP header of the carrier.
+         * @param sink   receives the payload bytes; not closed by the reader.
+         * @param cipher decrypts encrypted payloads; may be {@code null} if no password is known.
+         */
+        public Reader(BmpHeader image, OutputStream sink, PayloadCipher cipher) {
+            this.image = image;
+            this.sink = sink;
+            this.cipher = cipher;
+            this.decoder = new LsbCodec.Decoder(image.getBytesPerPixel(), MAGIC.length, this);
+        }
+
+        /**
+         * Returns the decoder to drive over the carrier's pixel rows.
+         *
+         * @return the decoder; it reports {@link LsbCodec.Decoder#isDone()} once the frame is read.
+         */
+        public LsbCodec.Decoder decoder() {
+            return decoder;
+        }
+
+        /**
+         * Returns the parsed frame header, once it has been decoded.
+         *
+         * @return the header, or {@code null} if it has not been read or the carrier holds no payload.
+         */
+        public PayloadFrame getFrame() {
+            return frame;
+        }
+
+        @Override
+        public void limitReached(LsbCodec.Decoder decoder) {
+            try {
+                advance();
+            } catch (IOException e) {
+                failure = e;
+                decoder.stop();
+            }
+        }
+
+        private void advance() throws IOException {
+            byte[] data = decoder.buffer();
+            int size = decoder.size();
+            ByteBuffer buffer = ByteBuffer.wrap(data, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+            switch (state) {
+                case MAGIC -> {
+                    if (hasMagic(data)) {
+                        state = State.HEADER;
+                        decoder.extendLimit(HEADER_SIZE);
+                    } else {
+                        state = State.ABSENT;
+                        decoder.stop();
+                    }
+                }
+                case HEADER -> {
+                    frame = parse(data);
+                    mode = EmbeddingMode.fromModeByte(frame.mode);
+                    maxBodySize = mode.getCapacity(image);
+                    decoder.setMode(mode);
+                    if (frame.isEncrypted()) {
+                        if (cipher == null) {
+                            throw new IOException("Payload is encrypted: a password is required");
+                        }
+                        decryption = cipher.newDecryption();
+                    }
+                    if (frame.isCompressed()) {
+                        if (frame.isChunked()) {
+                            throw new IOException("Chunked payloads cannot be compressed");
+                        }
+                        inflater = new Inflater();
+                        inflated = new byte[AppConstants.STREAM_CHUNK_BYTES];
+                    }
+                    if (frame.isChunked()) {
+                        if (mode.isScattered()) {
+                            throw new IOException("Chunked payloads cannot be scattered");
+                        }
+                        next(State.CHUNK_LENGTH, CHUNK_LENGTH_SIZE);
+                    } else if (frame.length > maxBodySize) {
+                        throw new IOException("Payload header announces " + frame.length
+                                + " bytes, but the image holds at most " + maxBodySize);
+                    } else if (mode.isScattered()) {
+                        // The body is not in carrier order; the caller continues with readScattered
+                        state = State.SCATTERED;
+                        decoder.stop();
+                    } else {
+                        remaining = frame.length;
+                        nextBodyPiece();
+                    }
+                }
+                case BODY -> {
+                    write(data, size);
+                    remaining -= size;
+                    nextBodyPiece();
+                }
+                case CHUNK_LENGTH -> {
+                    int length = Short.toUnsignedInt(buffer.getShort(0));
+                    if (length == 0) {
+                        next(State.TRAILER, TRAILER_SIZE - CHUNK_LENGTH_SIZE);
+                    } else {
+                        next(State.CHUNK, length);
+                    }
+                }
+                case CHUNK -> {
+                    write(data, size);
+                    next(State.CHUNK_LENGTH, CHUNK_LENGTH_SIZE);
+                }
+                case TRAILER -> complete(buffer.getInt(0));
+                default -> decoder.stop();
+            }
+        }
+
+        private void nextBodyPiece() throws IOException {
+            if (remaining > 0) {
+                next(State.BODY, (int) Math.min(remaining, AppConstants.STREAM_CHUNK_BYTES));
+            } else {
+                complete(frame.checksum);
+            }
+        }
+
+        private void next(State nextState, int count) throws IOException {
+            bodySize += count;
+            if (bodySize > maxBodySize) {
+                throw new IOException("Payload runs past the end of the image after " + written + " bytes");
+            }
+            state = nextState;
+            decoder.restart(count);
+        }
+
+        private void write(byte[] data, int length) throws IOException {
+            crc.update(data, 0, length);
+            written += length;
+            if (decryption != null) {
+                byte[] plain = decryption.update(data, 0, length);
+                emit(plain, plain.length);
+            } else {
+                emit(data, length);
+            }
+        }
+
+        private void emit(byte[] data, int length) throws IOException {
+            if (inflater == null) {
+                sink.write(data, 0, length);
+                produced += length;
+                return;
+            }
+
+            // The decoder reuses its buffer, so inflate everything before returning
+            inflater.setInput(data, 0, length);
+            try {
+                while (!inflater.finished() && !inflater.needsInput()) {
+                    int count = inflater.inflate(inflated);
+                    if (count == 0 && inflater.needsDictionary()) {
+                        throw new IOException("Compressed payload requires a preset dictionary");
+                    }
+                    if (produced + count > frame.payloadSize) {
+                        throw new IOException("Compressed payload inflates past the " + frame.payloadSize
+                                + " bytes announced");
+                    }
+                    sink.write(inflated, 0, count);
+                    produced += count;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Compressed payload is corrupted", e);
+            }
+        }
+
+        private void complete(int expectedChecksum) throws IOException {
+            state = State.COMPLETE;
+            decoder.stop();
+            if ((int) crc.getValue() != expectedChecksum) {
+                throw new IOException("Payload checksum mismatch");
+            }
+            if (decryption != null) {
+                byte[] plain = decryption.finish();
+                emit(plain, plain.length);
+            }
+            if (inflater != null && (!inflater.finished() || produced != frame.payloadSize)) {
+                throw new IOException("Compressed payload is truncated");
+            }
+        }
+
+        /**
+         * Returns whether the header announced a scattered payload, which the sequential decoder
+         * cannot read; the caller must then supply the whole carrier to {@link #readScattered}.
+         *
+         * @return {@code true} if the reader is waiting for {@link #readScattered}.
+         */
+        public boolean needsRandomAccess() {
+            return state == State.SCATTERED;
+        }
+
+        /**
+         * Reads a scattered payload body, after the decoder stopped with {@link #needsRandomAccess()}.
+         * The payload is read and written in pieces, as for a sequential payload.
+         *
+         * @param windows       buffers holding all pixel rows in file order, see {@link ScatteredCarrier}.
+         * @param rowsPerWindow the number of rows in each buffer except possibly the last.
+         * @throws IOException if the payload fails its checks or writing to the sink fails.
+         */
+        public void readScattered(ByteBuffer[] windows, int rowsPerWindow) throws IOException {
+            if (state != State.SCATTERED) {
+                throw new IllegalStateException("No scattered payload is pending");
+            }
+            long key = cipher != null ? cipher.scatterKey() : ScatteredCarrier.DEFAULT_KEY;
+            ScatteredCarrier carrier = new ScatteredCarrier(image, mode, key, windows, rowsPerWindow);
+            byte[] piece = new byte[Math.min(frame.length, AppConstants.STREAM_CHUNK_BYTES)];
+            for (long position = 0; position < frame.length; position += piece.length) {
+                int count = (int) Math.min(piece.length, frame.length - position);
+                carrier.read(piece, 0, count, position);
+                write(piece, count);
+            }
+            complete(frame.checksum);
+        }
+
+        /**
+         * Checks the outcome once the decoder is done or the carrier is exhausted.
+         *
+         * @return the number of payload bytes written after decompression, or -1 if the carrier holds
+         *         no framed payload.
+         * @throws IOException if a header is present but the payload is truncated, invalid or fails its
+         *                     checksum, or writing to the sink failed.
+         */
+        public long finish() throws IOException {
+            close();
+            if (failure != null) {
+                throw failure;
+            }
+            return switch (state) {
+                case COMPLETE -> produced;
+                case MAGIC, ABSENT -> -1;
+                case HEADER -> throw new IOException("Payload header is truncated");
+                case SCATTERED -> throw new IOException("Scattered payloads need random access to the carrier");
+                default -> throw new IOException("Payload is truncated after " + written + " bytes");
+            };
+        }
+
+        /**
+         * Releases the inflater of a compressed payload. Called by {@link #finish()}; callers must also
+         * close a reader that is abandoned because decoding failed.
+         */
+        @Override
+        public void close() {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.app;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/**
+ * Fork/join execution of full-image scans over horizontal bands of rows.
+ * <p>
+ * An image is split in half by rows until each band holds at most {@link AppConstants#PARALLEL_BAND_PIXELS}
+ * pixels; the bands are processed on the common fork/join pool. Images with fewer pixels than the
+ * threshold are processed serially as a single band on the calling thread, so small images do not
+ * pay for task creation. The threshold defaults to {@link AppConstants#PARALLEL_THRESHOLD_PIXELS} and
+ * can be changed with {@code -Dsteganography.parallel.threshold=<pixels>}; a very large value disables
+ * parallel execution.
+ * </p>
+ */
+public class PixelBands {
+
+    /** Pixel count from which scans run in parallel; controlled by the {@code steganography.parallel.threshold} property. */
+    public static final int PARALLEL_THRESHOLD =
+            Integer.getInteger("steganography.parallel.threshold", AppConstants.PARALLEL_THRESHOLD_PIXELS);
+
+    /**
+     * Work applied to one band of rows.
+     */
+    @FunctionalInterface
+    public interface BandAction {
+
+        /**
+         * Processes rows {@code fromRow} (inclusive) to {@code toRow} (exclusive).
+         *
+         * @param fromRow the first row of the band.
+         * @param toRow   the row after the last row of the band.
+         */
+        void apply(int fromRow, int toRow);
+    }
+
+    /**
+     * Work applied to one band of rows, producing a partial result.
+     *
+     * @param <R> the type of the partial result.
+     */
+    @FunctionalInterface
+    public interface BandFunction<R> {
+
+        /**
+         * Processes rows {@code fromRow} (inclusive) to {@code toRow} (exclusive).
+         *
+         * @param fromRow the first row of the band.
+         * @param toRow   the row after the last row of the band.
+         * @return the partial result for the band.
+         */
+        R apply(int fromRow, int toRow);
+    }
+
+    /**
+     * Applies an action to every row of an image, in parallel bands when the image is large enough.
+     * Bands never overlap, so the action may write to disjoint parts of a shared buffer.
+     *
+     * @param width     the image width in pixels.
+     * @param height    the image height in pixels.
+     * @param threshold the pixel count below which the action runs serially.
+     * @param action    the work to apply to each band.
+     */
+    public static void forEachBand(int width, int height, int threshold, BandAction action) {
+        if ((long) width * height < threshold) {
+            action.apply(0, height);
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new BandActionTask(action, width, 0, height));
+    }
+
+    /**
+     * Computes a partial result for every band of rows and merges them, in parallel when the image
+     * is large enough. Each band gets its own partial result, so no synchronization is needed.
+     *
+     * @param width     the image width in pixels.
+     * @param height    the image height in pixels.
+     * @param threshold the pixel count below which the function runs serially.
+     * @param function  the work to apply to each band.
+     * @param merge     combines two partial results; may return either argument after updating it.
+     * @param <R>       the type of the result.
+     * @return the merged result.
+     */
+    public static <R> R reduceBands(int width, int height, int threshold, BandFunction<R> function, BinaryOperator<R> merge) {
+        if ((long) width * height < threshold) {
+            return function.apply(0, height);
+        }
+        return ForkJoinPool.commonPool().invoke(new BandReduceTask<>(function, merge, width, 0, height));
+    }
+
+    private static boolean isLeaf(int width, int fromRow, int toRow) {
+        return toRow - fromRow <= 1 || (long) width * (toRow - fromRow) <= AppConstants.PARALLEL_BAND_PIXELS;
+    }
+
+    @SuppressWarnings("serial") // never serialized; the fields are not serializable
+    private static class BandActionTask extends RecursiveAction {
+
+        private final BandAction action;
+        private final int width;
+        private final int fromRow;
+        private final int toRow;
+
+        BandActionTask(BandAction action, int width, int fromRow, int toRow) {
+            this.action = action;
+            this.width = width;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (isLeaf(width, fromRow, toRow)) {
+                action.apply(fromRow, toRow);
+                return;
+            }
+            int middle = (fromRow + toRow) >>> 1;
+            invokeAll(new BandActionTask(action, width, fromRow, middle),
+                    new BandActionTask(action, width, middle, toRow));
+        }
+    }
+
+    @SuppressWarnings("serial") // never serialized; the fields are not serializable
+    private static class BandReduceTask<R> extends RecursiveTask<R> {
+
+        private final BandFunction<R> function;
+        private final BinaryOperator<R> merge;
+        private final int width;
+        private final int fromRow;
+        private final int toRow;
+
+        BandReduceTask(BandFunction<R> function, BinaryOperator<R> merge, int width, int fromRow, int toRow) {
+            this.function = function;
+            this.merge = merge;
+            this.width = width;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected R compute() {
+            if (isLeaf(width, fromRow, toRow)) {
+                return function.apply(fromRow, toRow);
+            }
+            int middle = (fromRow + toRow) >>> 1;
+            BandReduceTask<R> top = new BandReduceTask<>(function, merge, width, fromRow, middle);
+            top.fork();
+            R bottom = new BandReduceTask<>(function, merge, width, middle, toRow).compute();
+            return merge.apply(top.join(), bottom);
+        }
+    }
+}
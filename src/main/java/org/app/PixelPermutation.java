@@ -0,0 +1,93 @@
+package org.app;
+
+/**
+ * Key-seeded pseudo-random permutation of the indices {@code 0 .. size - 1}, evaluated one index at a time.
+ * <p>
+ * The permutation is a balanced four-round Feistel network over the smallest even number of bits that
+ * covers {@code size}, restricted to the domain by cycle walking: an output outside the domain is
+ * encrypted again until it falls inside. Because a Feistel network is a bijection on its bit width,
+ * cycle walking yields a bijection on {@code 0 .. size - 1}. The network covers at most four times the
+ * domain, so {@link #map(long)} needs fewer than four evaluations on average.
+ * </p>
+ * <p>
+ * Nothing is precomputed per index, so memory use is constant regardless of the domain size,
+ * unlike shuffling an array of every position. Instances are immutable and thread-safe.
+ * </p>
+ */
+public final class PixelPermutation {
+
+    private static final int ROUNDS = 4;
+
+    private final long size;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] roundKeys = new long[ROUNDS];
+
+    /**
+     * Creates the permutation of {@code 0 .. size - 1} selected by a key.
+     *
+     * @param size the domain size.
+     * @param key  selects the permutation; equal keys give equal permutations.
+     * @throws IllegalArgumentException if the size is not positive.
+     */
+    public PixelPermutation(long size, long key) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Permutation size must be positive: " + size);
+        }
+        int bits = 64 - Long.numberOfLeadingZeros(size - 1);
+        this.size = size;
+        this.halfBits = Math.max(1, (bits + 1) / 2);
+        this.halfMask = (1L << halfBits) - 1;
+
+        // Independent round keys from the key, SplitMix64 style
+        long state = key;
+        for (int round = 0; round < ROUNDS; round++) {
+            state += 0x9E3779B97F4A7C15L;
+            roundKeys[round] = mix(state);
+        }
+    }
+
+    /**
+     * Returns the position the given index is mapped to.
+     *
+     * @param index an index between 0 and {@link #size()} (exclusive).
+     * @return the permuted index, also between 0 and {@link #size()} (exclusive).
+     */
+    public long map(long index) {
+        long value = index;
+        do {
+            value = encrypt(value);
+        } while (value >= size);
+        return value;
+    }
+
+    /**
+     * Returns the number of indices permuted.
+     *
+     * @return the domain size.
+     */
+    public long size() {
+        return size;
+    }
+
+    private long encrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (long roundKey : roundKeys) {
+            // Multiply-shift round function: the high bits of the product depend on every input bit
+            long next = left ^ (((right ^ roundKey) * 0x9E3779B97F4A7C15L) >>> (64 - halfBits));
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    /**
+     * The SplitMix64 finalizer, used to expand the key into round keys.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,376 @@
+package org.app;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Cache of results computed from image files, such as statistics, steganalysis and LSB-plane images,
+ * so repeated operations on the same carrier do not decode and scan it again.
+ * <p>
+ * Results are keyed by the SHA-256 of the file content plus a <em>kind</em> naming the result and
+ * its parameters (e.g. {@code "statistics:1 LSB, all channels"}), so identical images under different
+ * names share their results and a modified file never returns stale ones. To avoid hashing a file on
+ * every lookup, the hash of each file is remembered by path, size and modification time.
+ * </p>
+ * <p>
+ * The memory tier is an LRU map bounded by the estimated size of its values. An optional disk tier
+ * stores the encoded values in a directory, one file per result, also bounded in size; files are
+ * evicted least recently used first, based on their modification time, which reads refresh. Values
+ * whose {@link Codec} cannot encode them are kept in memory only. Disk errors are logged and treated
+ * as misses. An instance is thread-safe; two threads missing on the same result may both compute it.
+ * </p>
+ */
+public class ResultCache {
+
+    private static final Logger logger = LogManager.getLogger(ResultCache.class);
+
+    private static final String DISK_SUFFIX = ".result";
+
+    /**
+     * Computes a result on a cache miss.
+     *
+     * @param <V> the type of the result.
+     */
+    @FunctionalInterface
+    public interface Loader<V> {
+
+        /**
+         * Computes the result.
+         *
+         * @return the result; never {@code null}.
+         * @throws Exception if the result cannot be computed; nothing is cached.
+         */
+        V load() throws Exception;
+    }
+
+    /**
+     * Sizes a result for the memory tier and converts it to bytes for the disk tier.
+     *
+     * @param <V> the type of the result.
+     */
+    public interface Codec<V> {
+
+        /**
+         * Estimates the memory held by a result.
+         *
+         * @param value the result.
+         * @return the estimated size in bytes.
+         */
+        long weight(V value);
+
+        /**
+         * Encodes a result for the disk tier.
+         *
+         * @param value the result.
+         * @return the encoded result, or {@code null} to keep it in memory only.
+         * @throws IOException if the result cannot be encoded.
+         */
+        byte[] encode(V value) throws IOException;
+
+        /**
+         * Decodes a result read from the disk tier.
+         *
+         * @param data the encoded result.
+         * @return the result.
+         * @throws IOException if the data is corrupted.
+         */
+        V decode(byte[] data) throws IOException;
+    }
+
+    /** Codec for text results, such as statistics. */
+    public static final Codec<String> TEXT = new Codec<>() {
+        @Override
+        public long weight(String value) {
+            return 40 + 2L * value.length();
+        }
+
+        @Override
+        public byte[] encode(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] data) {
+            return new String(data, StandardCharsets.UTF_8);
+        }
+    };
+
+    private final long maxMemoryBytes;
+    private final Path directory;
+    private final long maxDiskBytes;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, String> hashes = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > AppConstants.CACHE_HASHED_FILES;
+        }
+    };
+    private final AtomicLong diskBytes = new AtomicLong();
+    private long memoryBytes;
+
+    private record Entry(Object value, long weight) {
+    }
+
+    /**
+     * Creates a cache held in memory only.
+     *
+     * @param maxMemoryBytes the maximum estimated size of the cached values.
+     */
+    public ResultCache(long maxMemoryBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = null;
+        this.maxDiskBytes = 0;
+    }
+
+    /**
+     * Creates a cache with a disk tier in the given directory, created if needed. Results left there
+     * by earlier runs are reused.
+     *
+     * @param maxMemoryBytes the maximum estimated size of the values held in memory.
+     * @param directory      the directory of the disk tier.
+     * @param maxDiskBytes   the maximum total size of the files in the disk tier.
+     * @throws IOException if the directory cannot be created or listed.
+     */
+    public ResultCache(long maxMemoryBytes, Path directory, long maxDiskBytes) throws IOException {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = Files.createDirectories(directory);
+        this.maxDiskBytes = maxDiskBytes;
+        try (Stream<Path> files = Files.list(directory)) {
+            diskBytes.set(files.filter(ResultCache::isResultFile).mapToLong(ResultCache::sizeOf).sum());
+        }
+    }
+
+    /**
+     * Returns the content key of a file: the hex SHA-256 of its content, computed once per path,
+     * size and modification time.
+     *
+     * @param file the file.
+     * @return the content key.
+     * @throws IOException if the file cannot be read.
+     */
+    public String contentKey(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        String fingerprint = file.toAbsolutePath() + "|" + attributes.size() + "|" + attributes.lastModifiedTime();
+        synchronized (hashes) {
+            String hash = hashes.get(fingerprint);
+            if (hash != null) {
+                return hash;
+            }
+        }
+        String hash = hash(file);
+        synchronized (hashes) {
+            hashes.put(fingerprint, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns a result computed from a file, computing and caching it on a miss.
+     *
+     * @param file   the file the result is computed from.
+     * @param kind   names the result and every parameter it depends on.
+     * @param codec  sizes and encodes the result.
+     * @param loader computes the result on a miss.
+     * @param <V>    the type of the result.
+     * @return the cached or computed result.
+     * @throws Exception if the file cannot be hashed or the loader fails.
+     */
+    public <V> V get(Path file, String kind, Codec<V> codec, Loader<V> loader) throws Exception {
+        return get(contentKey(file), kind, codec, loader);
+    }
+
+    /**
+     * Returns a result for a content key, computing and caching it on a miss.
+     *
+     * @param contentKey the content key from {@link #contentKey(Path)}.
+     * @param kind       names the result and every parameter it depends on.
+     * @param codec      sizes and encodes the result.
+     * @param loader     computes the result on a miss.
+     * @param <V>        the type of the result.
+     * @return the cached or computed result.
+     * @throws Exception if the loader fails.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V get(String contentKey, String kind, Codec<V> codec, Loader<V> loader) throws Exception {
+        String key = contentKey + ":" + kind;
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                return (V) entry.value();
+            }
+        }
+
+        V value = readDisk(key, codec);
+        if (value == null) {
+            value = loader.load();
+            writeDisk(key, codec, value);
+        }
+        remember(key, value, codec.weight(value));
+        return value;
+    }
+
+    /**
+     * Empties the memory tier; the disk tier is kept.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            memoryBytes = 0;
+        }
+    }
+
+    private void remember(String key, Object value, long weight) {
+        if (weight > maxMemoryBytes) {
+            return;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(key, new Entry(value, weight));
+            memoryBytes += weight - (previous != null ? previous.weight() : 0);
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+                memoryBytes -= eldest.next().weight();
+                eldest.remove();
+            }
+        }
+    }
+
+    private <V> V readDisk(String key, Codec<V> codec) {
+        if (directory == null) {
+            return null;
+        }
+        Path file = diskFile(key);
+        try {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            V value = codec.decode(Files.readAllBytes(file));
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return value;
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable cache entry {}", file, e);
+            return null;
+        }
+    }
+
+    private <V> void writeDisk(String key, Codec<V> codec, V value) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            byte[] data = codec.encode(value);
+            if (data == null || data.length > maxDiskBytes) {
+                return;
+            }
+            // Written to a temporary file and moved, so readers never see a partial entry
+            Path file = diskFile(key);
+            Path temporary = Files.createTempFile(directory, "entry", ".tmp");
+            Files.write(temporary, data);
+            long previous = Files.exists(file) ? sizeOf(file) : 0;
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (diskBytes.addAndGet(data.length - previous) > maxDiskBytes) {
+                trimDisk();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write cache entry for {}", key, e);
+        }
+    }
+
+    /**
+     * Deletes the least recently used disk entries until the disk tier is back under its limit.
+     */
+    private synchronized void trimDisk() throws IOException {
+        if (diskBytes.get() <= maxDiskBytes) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            listing.filter(ResultCache::isResultFile).forEach(files::add);
+        }
+        files.sort(Comparator.comparing(ResultCache::modifiedTime));
+        for (Path file : files) {
+            if (diskBytes.get() <= maxDiskBytes) {
+                break;
+            }
+            long size = sizeOf(file);
+            if (Files.deleteIfExists(file)) {
+                diskBytes.addAndGet(-size);
+            }
+        }
+    }
+
+    private Path diskFile(String key) {
+        // Kinds may contain any character; the file name only uses the hash of the full key
+        return directory.resolve(sha256(key.getBytes(StandardCharsets.UTF_8)) + DISK_SUFFIX);
+    }
+
+    private static boolean isResultFile(Path file) {
+        return file.getFileName().toString().endsWith(DISK_SUFFIX);
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime modifiedTime(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Hashes a file through memory-mapped windows of {@link AppConstants#MAPPED_WINDOW_BYTES}.
+     */
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += AppConstants.MAPPED_WINDOW_BYTES) {
+                ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(AppConstants.MAPPED_WINDOW_BYTES, size - position));
+                digest.update(window);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String sha256(byte[] data) {
+        return HexFormat.of().formatHex(newDigest().digest(data));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
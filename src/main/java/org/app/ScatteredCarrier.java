@@ -0,0 +1,211 @@
+package org.app;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Random-access view of a carrier for scattered embedding, where consecutive payload bits are spread
+ * over the image in a key-seeded pseudo-random order instead of filling it from the first row.
+ * <p>
+ * The carrier is divided into <em>slots</em>: every selected carrier byte of the rows that follow the
+ * frame header, in file order, each holding {@link EmbeddingMode#getBitsPerChannel()} payload bits.
+ * Slot {@code n} of the payload is stored in slot {@link PixelPermutation#map(long) map(n)} of the carrier.
+ * The frame header itself stays sequential at the start of the pixel data, so it can be read before
+ * the key is known; the rows it touches are left out of the scattered area.
+ * </p>
+ * <p>
+ * The rows are supplied as a list of buffers, each holding the same number of whole rows (the last
+ * may hold fewer): a single buffer for an image in memory, or consecutive memory-mapped windows for
+ * a file. An instance keeps a small scratch buffer and must not be shared between threads.
+ * </p>
+ */
+public class ScatteredCarrier {
+
+    /** Permutation key used when no password is given; hides the payload from visual attacks, not from a reader. */
+    public static final long DEFAULT_KEY = 0x5354454753434154L;
+
+    private static final int LOCATE_BATCH = 256;
+
+    private final ByteBuffer[] windows;
+    private final int rowsPerWindow;
+    private final int stride;
+    private final int firstRow;
+    private final int bits;
+    private final int bytesPerPixel;
+    private final int[] channelOffsets;
+    private final long slotsPerRow;
+    private final PixelPermutation permutation;
+    private final long[] locations = new long[LOCATE_BATCH];
+
+    /**
+     * Creates a view over the given rows.
+     *
+     * @param header        the BMP header of the carrier.
+     * @param mode          the embedding mode; must be scattered and fit the image.
+     * @param key           selects the permutation.
+     * @param windows       buffers holding the pixel rows in file order, each starting at a row boundary.
+     * @param rowsPerWindow the number of rows in each buffer except possibly the last.
+     * @throws IllegalArgumentException if the image has no room for a scattered payload.
+     */
+    public ScatteredCarrier(BmpHeader header, EmbeddingMode mode, long key, ByteBuffer[] windows, int rowsPerWindow) {
+        this.windows = windows;
+        this.rowsPerWindow = rowsPerWindow;
+        this.stride = header.getRowStride();
+        this.firstRow = firstRow(header);
+        this.bits = mode.getBitsPerChannel();
+        this.bytesPerPixel = header.getBytesPerPixel();
+
+        int channels = 0;
+        int[] offsets = new int[bytesPerPixel];
+        if (!mode.usesAllChannels()) {
+            for (int channel = 0; channel < bytesPerPixel; channel++) {
+                if (mode.isChannelSelected(channel)) {
+                    offsets[channels++] = channel;
+                }
+            }
+        }
+        this.channelOffsets = mode.usesAllChannels() ? null : Arrays.copyOf(offsets, channels);
+        this.slotsPerRow = slotsPerRow(header, mode);
+
+        long slots = getSlotCount(header, mode);
+        if (slots <= 0) {
+            throw new IllegalArgumentException("Image is too small for scattered embedding");
+        }
+        this.permutation = new PixelPermutation(slots, key);
+    }
+
+    /**
+     * Returns the number of carrier slots available to a scattered payload.
+     *
+     * @param header the BMP header of the carrier.
+     * @param mode   the embedding mode.
+     * @return the slot count, or 0 if the frame header leaves no room.
+     */
+    public static long getSlotCount(BmpHeader header, EmbeddingMode mode) {
+        return Math.max(0, (long) (header.getHeight() - firstRow(header)) * slotsPerRow(header, mode));
+    }
+
+    private static int firstRow(BmpHeader header) {
+        long headerCarrierBytes = PayloadFrame.HEADER_SIZE * 8L;
+        return (int) Math.min(header.getHeight(),
+                (headerCarrierBytes + header.getPixelBytesPerRow() - 1) / header.getPixelBytesPerRow());
+    }
+
+    private static long slotsPerRow(BmpHeader header, EmbeddingMode mode) {
+        return mode.usesAllChannels()
+                ? header.getPixelBytesPerRow()
+                : (long) header.getWidth() * mode.countChannels(header.getBytesPerPixel());
+    }
+
+    /**
+     * Writes payload bytes into their scattered slots.
+     *
+     * @param data     the buffer holding the bytes.
+     * @param offset   the offset of the first byte in the buffer.
+     * @param length   the number of bytes to write.
+     * @param position the position of the first byte within the payload.
+     */
+    public void write(byte[] data, int offset, int length, long position) {
+        long firstBit = position * 8;
+        long endBit = firstBit + length * 8L;
+        long slot = firstBit / bits;
+        int slotBit = (int) (firstBit - slot * bits);
+        for (long bit = firstBit; bit < endBit; ) {
+            int batch = locateBatch(slot, slotBit, endBit - bit);
+            for (int i = 0; i < batch; i++) {
+                int count = (int) Math.min(bits - slotBit, endBit - bit);
+                int value = bitsAt(data, offset, bit - firstBit, count);
+                ByteBuffer window = windows[(int) (locations[i] >>> 32)];
+                int index = (int) locations[i];
+                int mask = ((1 << count) - 1) << slotBit;
+                window.put(index, (byte) ((window.get(index) & ~mask) | (value << slotBit)));
+                bit += count;
+                slotBit = 0;
+            }
+            slot += batch;
+        }
+    }
+
+    /**
+     * Reads payload bytes from their scattered slots.
+     *
+     * @param data     receives the bytes.
+     * @param offset   the offset in {@code data} of the first byte.
+     * @param length   the number of bytes to read.
+     * @param position the position of the first byte within the payload.
+     */
+    public void read(byte[] data, int offset, int length, long position) {
+        Arrays.fill(data, offset, offset + length, (byte) 0);
+        long firstBit = position * 8;
+        long endBit = firstBit + length * 8L;
+        long slot = firstBit / bits;
+        int slotBit = (int) (firstBit - slot * bits);
+        for (long bit = firstBit; bit < endBit; ) {
+            int batch = locateBatch(slot, slotBit, endBit - bit);
+            for (int i = 0; i < batch; i++) {
+                int count = (int) Math.min(bits - slotBit, endBit - bit);
+                int value = (windows[(int) (locations[i] >>> 32)].get((int) locations[i]) >> slotBit)
+                        & ((1 << count) - 1);
+                long dataBit = bit - firstBit;
+                int index = offset + (int) (dataBit >>> 3);
+                int shift = (int) (dataBit & 7);
+                data[index] |= (byte) (value << shift);
+                if (shift + count > 8) {
+                    data[index + 1] |= (byte) (value >>> (8 - shift));
+                }
+                bit += count;
+                slotBit = 0;
+            }
+            slot += batch;
+        }
+    }
+
+    /**
+     * Returns {@code count} bits of the data starting at bit {@code dataBit}, which may span two bytes.
+     */
+    private static int bitsAt(byte[] data, int offset, long dataBit, int count) {
+        int index = offset + (int) (dataBit >>> 3);
+        int shift = (int) (dataBit & 7);
+        int word = data[index] & 0xFF;
+        if (shift + count > 8) {
+            word |= (data[index + 1] & 0xFF) << 8;
+        }
+        return (word >>> shift) & ((1 << count) - 1);
+    }
+
+    /**
+     * Locates the carrier bytes of the next slots into {@link #locations}, before any of them is accessed,
+     * so that the cache misses of a batch overlap instead of being taken one after another.
+     *
+     * @return the number of slots located.
+     */
+    private int locateBatch(long slot, int slotBit, long remainingBits) {
+        int batch = (int) Math.min(locations.length, (slotBit + remainingBits + bits - 1) / bits);
+        for (int i = 0; i < batch; i++) {
+            locations[i] = locate(slot + i);
+        }
+        return batch;
+    }
+
+    /**
+     * Finds the carrier byte of a payload slot.
+     *
+     * @return the window number in the high 32 bits and the index within the window in the low 32 bits.
+     */
+    private long locate(long slot) {
+        long target = permutation.map(slot);
+        int row = (int) (target / slotsPerRow);
+        int column = (int) (target - row * slotsPerRow);
+        if (channelOffsets != null) {
+            int channels = channelOffsets.length;
+            int pixel = column / channels;
+            column = pixel * bytesPerPixel + channelOffsets[column - pixel * channels];
+        }
+        row += firstRow;
+        if (windows.length == 1) {
+            return (long) row * stride + column;
+        }
+        int window = row / rowsPerWindow;
+        return (long) window << 32 | (row - window * rowsPerWindow) * stride + column;
+    }
+}
@@ -0,0 +1,219 @@
+package org.app;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link Metrics.Registry} keeping running totals per stage: operation count, total and maximum time,
+ * bytes processed and bytes allocated. Totals are kept in striped adders, so concurrent batch workers
+ * do not contend on them. Published over JMX by {@link #registerPlatform()}.
+ */
+public class StageMetrics implements Metrics.Registry, StageMetricsMXBean {
+
+    /** Name under which the registry is published on the platform MBean server. */
+    public static final String OBJECT_NAME = "org.app:type=StageMetrics";
+
+    private final Counters[] counters = new Counters[Metrics.Stage.values().length];
+
+    /**
+     * Creates a registry with every total at zero.
+     */
+    public StageMetrics() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new Counters();
+        }
+    }
+
+    /**
+     * Creates a registry and publishes it on the platform MBean server as {@value #OBJECT_NAME},
+     * replacing any registry published earlier.
+     *
+     * @return the registry.
+     * @throws IllegalStateException if the MBean cannot be registered.
+     */
+    public static StageMetrics registerPlatform() {
+        StageMetrics metrics = new StageMetrics();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(metrics, name);
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+        }
+        return metrics;
+    }
+
+    @Override
+    public void record(Metrics.Stage stage, long nanos, long bytes, long allocatedBytes) {
+        Counters stageCounters = counters[stage.ordinal()];
+        stageCounters.count.increment();
+        stageCounters.nanos.add(nanos);
+        stageCounters.maxNanos.accumulate(nanos);
+        stageCounters.bytes.add(bytes);
+        if (allocatedBytes >= 0) {
+            stageCounters.allocatedBytes.add(allocatedBytes);
+        }
+    }
+
+    @Override
+    public List<Totals> getStages() {
+        List<Totals> stages = new ArrayList<>(counters.length);
+        for (Metrics.Stage stage : Metrics.Stage.values()) {
+            stages.add(getTotals(stage));
+        }
+        return stages;
+    }
+
+    /**
+     * Returns the totals of one stage.
+     *
+     * @param stage the stage.
+     * @return a snapshot of its totals.
+     */
+    public Totals getTotals(Metrics.Stage stage) {
+        Counters stageCounters = counters[stage.ordinal()];
+        return new Totals(stage.name(), stageCounters.count.sum(), stageCounters.nanos.sum(),
+                stageCounters.maxNanos.get(), stageCounters.bytes.sum(), stageCounters.allocatedBytes.sum());
+    }
+
+    @Override
+    public void reset() {
+        for (Counters stageCounters : counters) {
+            stageCounters.count.reset();
+            stageCounters.nanos.reset();
+            stageCounters.maxNanos.reset();
+            stageCounters.bytes.reset();
+            stageCounters.allocatedBytes.reset();
+        }
+    }
+
+    /**
+     * Returns one line per measured stage with its count, times, throughput and allocation.
+     *
+     * @return the summary, or an empty string if nothing was measured.
+     */
+    @Override
+    public String toString() {
+        StringJoiner summary = new StringJoiner(System.lineSeparator());
+        for (Totals totals : getStages()) {
+            if (totals.getCount() > 0) {
+                summary.add(String.format("%-13s %8d ops %10.1f ms total %8.2f ms mean %8.2f ms max %9.1f MB/s %10.1f MB allocated",
+                        totals.getStage(), totals.getCount(), totals.getTotalMillis(), totals.getMeanMillis(),
+                        totals.getMaxMillis(), totals.getMegabytesPerSecond(), totals.getAllocatedBytes() / 1e6));
+            }
+        }
+        return summary.toString();
+    }
+
+    private static final class Counters {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+    }
+
+    /**
+     * Totals of one stage at the time they were read. Exposed over JMX as composite data.
+     */
+    public static final class Totals {
+
+        private final String stage;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long bytes;
+        private final long allocatedBytes;
+
+        private Totals(String stage, long count, long totalNanos, long maxNanos, long bytes, long allocatedBytes) {
+            this.stage = stage;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.bytes = bytes;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        /**
+         * Returns the stage name.
+         *
+         * @return the {@link Metrics.Stage} name.
+         */
+        public String getStage() {
+            return stage;
+        }
+
+        /**
+         * Returns the number of operations measured.
+         *
+         * @return the operation count.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the time spent in the stage, summed over concurrent operations.
+         *
+         * @return the total time in milliseconds.
+         */
+        public double getTotalMillis() {
+            return totalNanos / 1e6;
+        }
+
+        /**
+         * Returns the mean time of one operation.
+         *
+         * @return the mean time in milliseconds, or 0 if nothing was measured.
+         */
+        public double getMeanMillis() {
+            return count == 0 ? 0 : totalNanos / 1e6 / count;
+        }
+
+        /**
+         * Returns the time of the slowest operation.
+         *
+         * @return the maximum time in milliseconds.
+         */
+        public double getMaxMillis() {
+            return maxNanos / 1e6;
+        }
+
+        /**
+         * Returns the bytes processed, as defined by the stage.
+         *
+         * @return the byte count.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Returns the throughput of one operation at a time: bytes processed over time spent.
+         *
+         * @return the throughput in megabytes per second, or 0 if nothing was measured.
+         */
+        public double getMegabytesPerSecond() {
+            return totalNanos == 0 ? 0 : bytes * 1e3 / totalNanos;
+        }
+
+        /**
+         * Returns the bytes allocated by the threads that ran the operations.
+         *
+         * @return the allocated byte count.
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+}
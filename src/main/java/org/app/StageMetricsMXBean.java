@@ -0,0 +1,21 @@
+package org.app;
+
+import java.util.List;
+
+/**
+ * Management interface of {@link StageMetrics}, published over JMX.
+ */
+public interface StageMetricsMXBean {
+
+    /**
+     * Returns the totals of every stage measured so far.
+     *
+     * @return one entry per stage, in {@link Metrics.Stage} order.
+     */
+    List<StageMetrics.Totals> getStages();
+
+    /**
+     * Clears every total.
+     */
+    void reset();
+}
@@ -0,0 +1,520 @@
+package org.app;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Statistical detection of LSB embedding, as a numeric counterpart of
+ * {@link ImageCryptoTools#performVisualAttack(Image)}.
+ * <p>
+ * Three classic detectors are computed on the colour channels (alpha is ignored):
+ * </p>
+ * <ul>
+ *     <li><b>Chi-square attack</b> (Westfeld and Pfitzmann): LSB replacement equalises the counts of
+ *     each pair of values {@code 2k, 2k + 1}; the result is the probability that the pair counts
+ *     are that even by chance, close to 1 for a fully embedded image.</li>
+ *     <li><b>RS analysis</b> (Fridrich, Goljan and Du): counts regular and singular groups of four
+ *     horizontally adjacent samples under positive and negative LSB flipping, in the image and in
+ *     the image with every LSB flipped, and solves for the embedding rate.</li>
+ *     <li><b>Sample pair analysis</b> (Dumitrescu, Wu and Wang): estimates the embedding rate from the
+ *     trace sets of horizontally adjacent sample pairs.</li>
+ * </ul>
+ * <p>
+ * All counts are gathered in a single pass over the pixels. Large images are split into row bands
+ * that are counted in parallel (see {@link PixelBands}) and whose counts are summed afterwards;
+ * groups and pairs never cross rows, so the result does not depend on the banding. Rates are
+ * fractions of the sample LSBs carrying payload, between 0 and 1, and assume the payload is spread
+ * over the whole image: a short payload in the first rows is diluted by the clean rows after it,
+ * and is better located by a {@link ChiSquareProfile}.
+ * </p>
+ */
+public class Steganalysis {
+
+    /** Minimum expected count of a value pair for it to take part in the chi-square test. */
+    static final int MIN_EXPECTED_PAIR_COUNT = 5;
+
+    private final double chiSquare;
+    private final int degreesOfFreedom;
+    private final double chiSquareProbability;
+    private final double rsRate;
+    private final double spaRate;
+    private final long samples;
+
+    /** Stores results in a {@link ResultCache}, so batch runs do not analyze duplicate images again. */
+    static final ResultCache.Codec<Steganalysis> CACHE_CODEC = new ResultCache.Codec<>() {
+        @Override
+        public long weight(Steganalysis value) {
+            return 64;
+        }
+
+        @Override
+        public byte[] encode(Steganalysis value) {
+            return ByteBuffer.allocate(48).putDouble(value.chiSquare).putInt(value.degreesOfFreedom)
+                    .putDouble(value.chiSquareProbability).putDouble(value.rsRate).putDouble(value.spaRate)
+                    .putLong(value.samples).array();
+        }
+
+        @Override
+        public Steganalysis decode(byte[] data) throws IOException {
+            if (data.length != 48) {
+                throw new IOException("Invalid cached steganalysis result");
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            return new Steganalysis(buffer.getDouble(), buffer.getInt(), buffer.getDouble(), buffer.getDouble(),
+                    buffer.getDouble(), buffer.getLong());
+        }
+    };
+
+    private Steganalysis(double chiSquare, int degreesOfFreedom, double chiSquareProbability, double rsRate,
+                         double spaRate, long samples) {
+        this.chiSquare = chiSquare;
+        this.degreesOfFreedom = degreesOfFreedom;
+        this.chiSquareProbability = chiSquareProbability;
+        this.rsRate = rsRate;
+        this.spaRate = spaRate;
+        this.samples = samples;
+    }
+
+    private Steganalysis(Counts counts) {
+        this.samples = counts.samples;
+        double[] test = chiSquareTest(counts.histogram, 0, counts.histogram.length);
+        this.chiSquare = test[0];
+        this.degreesOfFreedom = (int) test[1];
+        this.chiSquareProbability = test[2];
+        this.rsRate = counts.rsRate();
+        this.spaRate = counts.spaRate();
+    }
+
+    /**
+     * Analyzes an image.
+     *
+     * @param image the image to analyze.
+     * @return the detector results.
+     */
+    public static Steganalysis analyze(Image image) {
+        return analyze(image, PixelBands.PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Analyzes an image, scanning row bands in parallel when the image has at least
+     * {@code parallelThreshold} pixels. Each band reads its rows in bulk as packed ARGB integers.
+     *
+     * @param image             the image to analyze.
+     * @param parallelThreshold the pixel count below which the image is scanned on the calling thread.
+     * @return the detector results.
+     */
+    public static Steganalysis analyze(Image image, int parallelThreshold) {
+        try (Metrics.Sample sample = Metrics.start(Metrics.Stage.STEGANALYSIS)) {
+            int width = (int) image.getWidth();
+            int height = (int) image.getHeight();
+            sample.addBytes(4L * width * height);
+            PixelReader reader = image.getPixelReader();
+            return new Steganalysis(PixelBands.reduceBands(width, height, parallelThreshold, (fromRow, toRow) -> {
+                Counts counts = new Counts(width);
+                int[] row = new int[width];
+                for (int y = fromRow; y < toRow; y++) {
+                    reader.getPixels(0, y, width, 1, PixelFormat.getIntArgbInstance(), row, 0, width);
+                    counts.addArgbRow(row, 0);
+                }
+                return counts;
+            }, Counts::merge));
+        }
+    }
+
+    /**
+     * Analyzes packed ARGB pixels, as read with {@link PixelFormat#getIntArgbInstance()}.
+     *
+     * @param pixels            the pixels, row by row.
+     * @param width             the image width.
+     * @param height            the image height.
+     * @param parallelThreshold the pixel count below which the pixels are scanned on the calling thread.
+     * @return the detector results.
+     * @throws IllegalArgumentException if the buffer holds fewer than {@code width * height} pixels.
+     */
+    public static Steganalysis analyze(int[] pixels, int width, int height, int parallelThreshold) {
+        if ((long) width * height > pixels.length) {
+            throw new IllegalArgumentException("Pixel buffer is smaller than " + width + "x" + height);
+        }
+        try (Metrics.Sample sample = Metrics.start(Metrics.Stage.STEGANALYSIS)) {
+            sample.addBytes(4L * width * height);
+            return new Steganalysis(PixelBands.reduceBands(width, height, parallelThreshold, (fromRow, toRow) -> {
+                Counts counts = new Counts(width);
+                for (int y = fromRow; y < toRow; y++) {
+                    counts.addArgbRow(pixels, y * width);
+                }
+                return counts;
+            }, Counts::merge));
+        }
+    }
+
+    /**
+     * Analyzes a BMP file without decoding it into an image, reading the pixel rows of each band
+     * through a memory-mapped window. Usable without the JavaFX toolkit. Images with a colour palette
+     * are analyzed on their palette indices; 1-, 4- and 16-bit images, whose pixels do not fill whole
+     * bytes per channel, are not supported.
+     *
+     * @param file the BMP file to analyze.
+     * @return the detector results.
+     * @throws IOException if the file cannot be read or is not an 8-, 24- or 32-bit BMP.
+     */
+    public static Steganalysis analyze(Path file) throws IOException {
+        try (Metrics.Sample sample = Metrics.start(Metrics.Stage.STEGANALYSIS);
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            BmpHeader header = BmpHeader.read(channel);
+            int bitCount = header.getBitCount();
+            if (bitCount < 8 || bitCount == 16) {
+                throw new IOException("Steganalysis requires an 8-, 24- or 32-bit image, found " + bitCount + "-bit");
+            }
+            sample.addBytes(header.getPixelDataLength());
+            int width = header.getWidth();
+            int stride = header.getRowStride();
+            return new Steganalysis(PixelBands.reduceBands(width, header.getHeight(), PixelBands.PARALLEL_THRESHOLD,
+                    (fromRow, toRow) -> {
+                        Counts counts = new Counts(width);
+                        try {
+                            ByteBuffer rows = channel.map(FileChannel.MapMode.READ_ONLY,
+                                    header.getPixelDataOffset() + (long) fromRow * stride,
+                                    (long) (toRow - fromRow) * stride).order(ByteOrder.LITTLE_ENDIAN);
+                            for (int position = 0; position < rows.limit(); position += stride) {
+                                counts.addBmpRow(rows, position, header.getBytesPerPixel());
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return counts;
+                    }, Counts::merge));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns the chi-square statistic of the value pair counts.
+     *
+     * @return the statistic; lower means more evenly paired values.
+     */
+    public double getChiSquare() {
+        return chiSquare;
+    }
+
+    /**
+     * Returns the degrees of freedom of the chi-square test.
+     *
+     * @return one less than the number of value pairs tested.
+     */
+    public int getDegreesOfFreedom() {
+        return degreesOfFreedom;
+    }
+
+    /**
+     * Returns the chi-square embedding probability: the probability that value pairs at least as
+     * unevenly counted would occur in an image with full LSB embedding.
+     *
+     * @return a probability between 0 and 1; close to 1 when the LSBs are saturated with payload.
+     */
+    public double getChiSquareProbability() {
+        return chiSquareProbability;
+    }
+
+    /**
+     * Returns the embedding rate estimated by RS analysis.
+     *
+     * @return the estimated fraction of LSBs carrying payload, between 0 and 1, or {@code NaN} if
+     *         the image does not provide enough groups to solve for it.
+     */
+    public double getRsRate() {
+        return rsRate;
+    }
+
+    /**
+     * Returns the embedding rate estimated by sample pair analysis.
+     *
+     * @return the estimated fraction of LSBs carrying payload, between 0 and 1, or {@code NaN} if
+     *         the image does not provide enough pairs to solve for it.
+     */
+    public double getSpaRate() {
+        return spaRate;
+    }
+
+    /**
+     * Returns the combined embedding rate estimate: the mean of the RS and SPA estimates that
+     * could be computed.
+     *
+     * @return the estimated fraction of LSBs carrying payload, between 0 and 1, or {@code NaN} if
+     *         neither estimate could be computed.
+     */
+    public double getEstimatedRate() {
+        if (Double.isNaN(rsRate)) {
+            return spaRate;
+        }
+        return Double.isNaN(spaRate) ? rsRate : (rsRate + spaRate) / 2;
+    }
+
+    /**
+     * Returns whether the image is likely to carry an LSB payload.
+     *
+     * @return {@code true} if the estimated rate reaches {@link AppConstants#STEGANALYSIS_RATE_THRESHOLD}
+     *         or the chi-square probability reaches {@link AppConstants#CHI_SQUARE_PROBABILITY_THRESHOLD}.
+     */
+    public boolean isSuspicious() {
+        return getEstimatedRate() >= AppConstants.STEGANALYSIS_RATE_THRESHOLD
+                || chiSquareProbability >= AppConstants.CHI_SQUARE_PROBABILITY_THRESHOLD;
+    }
+
+    /**
+     * Returns the number of colour samples analyzed.
+     *
+     * @return three samples per pixel, or one for a BMP file with a colour palette.
+     */
+    public long getSampleCount() {
+        return samples;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Chi-square: %.4f (p=%.4f, %d df)\nRS rate: %.4f\nSPA rate: %.4f\nEstimated rate: %.4f",
+                chiSquare, chiSquareProbability, degreesOfFreedom, rsRate, spaRate, getEstimatedRate());
+    }
+
+    /**
+     * Runs the chi-square test on the value pairs of a range of a histogram of sample values; the
+     * range must hold whole 256-bin histograms.
+     *
+     * @return the statistic, the degrees of freedom and the embedding probability; the probability
+     *         is 0 if fewer than two pairs are populated enough to be tested.
+     */
+    static double[] chiSquareTest(long[] histogram, int from, int to) {
+        double statistic = 0;
+        int pairs = 0;
+        for (int i = from; i < to; i += 2) {
+            double expected = (histogram[i] + histogram[i + 1]) / 2.0;
+            if (expected >= MIN_EXPECTED_PAIR_COUNT) {
+                double difference = histogram[i] - expected;
+                statistic += difference * difference / expected;
+                pairs++;
+            }
+        }
+        if (pairs < 2) {
+            return new double[]{statistic, 0, 0};
+        }
+        return new double[]{statistic, pairs - 1, chiSquareUpperTail(statistic, pairs - 1)};
+    }
+
+    /**
+     * Returns the probability that a chi-square variable with the given degrees of freedom exceeds
+     * {@code x}, i.e. the regularized upper incomplete gamma function Q(df / 2, x / 2).
+     */
+    static double chiSquareUpperTail(double x, int degreesOfFreedom) {
+        double a = degreesOfFreedom / 2.0;
+        double z = x / 2;
+        if (z <= 0) {
+            return 1;
+        }
+        double logPrefix = a * Math.log(z) - z - logGamma(a);
+        if (z < a + 1) {
+            // Series for the lower function P, converging quickly below the mean
+            double term = 1 / a;
+            double sum = term;
+            for (int n = 1; n < 1000 && Math.abs(term) > Math.abs(sum) * 1e-15; n++) {
+                term *= z / (a + n);
+                sum += term;
+            }
+            return Math.max(0, 1 - sum * Math.exp(logPrefix));
+        }
+        // Continued fraction for Q (modified Lentz), converging quickly above the mean
+        double tiny = 1e-300;
+        double b = z + 1 - a;
+        double c = 1 / tiny;
+        double d = 1 / b;
+        double fraction = d;
+        for (int n = 1; n < 1000; n++) {
+            double an = -n * (n - a);
+            b += 2;
+            d = an * d + b;
+            d = Math.abs(d) < tiny ? tiny : d;
+            c = b + an / c;
+            c = Math.abs(c) < tiny ? tiny : c;
+            d = 1 / d;
+            double delta = d * c;
+            fraction *= delta;
+            if (Math.abs(delta - 1) < 1e-15) {
+                break;
+            }
+        }
+        return Math.min(1, Math.exp(logPrefix) * fraction);
+    }
+
+    /**
+     * Lanczos approximation of ln Γ(x) for x > 0.
+     */
+    private static double logGamma(double x) {
+        double[] coefficients = {76.18009172947146, -86.50532032941677, 24.01409824083091,
+                -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5};
+        double y = x;
+        double tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double series = 1.000000000190015;
+        for (double coefficient : coefficients) {
+            series += coefficient / ++y;
+        }
+        return -tmp + Math.log(2.5066282746310005 * series / x);
+    }
+
+    /**
+     * Returns the root of {@code a x² + b x + c = 0} with the smaller magnitude, or {@code NaN} if
+     * there is no real root.
+     */
+    private static double smallerRoot(double a, double b, double c) {
+        if (a == 0) {
+            return b == 0 ? Double.NaN : -c / b;
+        }
+        double discriminant = b * b - 4 * a * c;
+        if (discriminant < 0) {
+            return Double.NaN;
+        }
+        double root = Math.sqrt(discriminant);
+        double first = (-b + root) / (2 * a);
+        double second = (-b - root) / (2 * a);
+        return Math.abs(first) <= Math.abs(second) ? first : second;
+    }
+
+    private static double clampRate(double rate) {
+        return Double.isNaN(rate) ? rate : Math.max(0, Math.min(1, rate));
+    }
+
+    /**
+     * Counts gathered from a band of rows: a histogram per channel, RS group classes and sample pair
+     * trace sets. Each row is split into one plane per channel before counting.
+     */
+    private static class Counts {
+
+        private final long[] histogram = new long[3 * 256];
+        /** Regular and singular groups under the positive and negative masks, then the same with all LSBs flipped. */
+        private final long[] groups = new long[8];
+        private final int[] plane;
+        private long samples;
+        private long pairs;
+        private long closePairs;
+        private long pairsX;
+        private long pairsY;
+
+        Counts(int width) {
+            this.plane = new int[width];
+        }
+
+        void addArgbRow(int[] pixels, int offset) {
+            for (int channel = 0; channel < 3; channel++) {
+                int shift = 16 - channel * 8;
+                for (int x = 0; x < plane.length; x++) {
+                    plane[x] = (pixels[offset + x] >>> shift) & 0xFF;
+                }
+                addPlane(channel);
+            }
+        }
+
+        void addBmpRow(ByteBuffer rows, int position, int bytesPerPixel) {
+            // An 8-bit image has a single plane of palette indices, which is where its LSBs are embedded
+            for (int channel = 0; channel < Math.min(3, bytesPerPixel); channel++) {
+                for (int x = 0; x < plane.length; x++) {
+                    plane[x] = rows.get(position + x * bytesPerPixel + channel) & 0xFF;
+                }
+                addPlane(channel);
+            }
+        }
+
+        private void addPlane(int channel) {
+            int width = plane.length;
+            int base = channel * 256;
+            for (int x = 0; x < width; x++) {
+                histogram[base + plane[x]]++;
+            }
+            samples += width;
+
+            // Sample pairs: X holds pairs whose second value is even and larger, or odd and smaller
+            for (int x = 0; x + 1 < width; x++) {
+                int u = plane[x];
+                int v = plane[x + 1];
+                if ((u >> 1) == (v >> 1)) {
+                    closePairs++;
+                }
+                if (u != v) {
+                    if (((v & 1) == 0) == (u < v)) {
+                        pairsX++;
+                    } else {
+                        pairsY++;
+                    }
+                }
+            }
+            pairs += Math.max(0, width - 1);
+
+            // RS groups of four samples with the mask 0110, in the image and with every LSB flipped
+            for (int x = 0; x + 4 <= width; x += 4) {
+                int a = plane[x];
+                int b = plane[x + 1];
+                int c = plane[x + 2];
+                int d = plane[x + 3];
+                classify(0, a, b, c, d);
+                classify(4, a ^ 1, b ^ 1, c ^ 1, d ^ 1);
+            }
+        }
+
+        private void classify(int slot, int a, int b, int c, int d) {
+            int smoothness = Math.abs(b - a) + Math.abs(c - b) + Math.abs(d - c);
+            int b1 = b ^ 1;
+            int c1 = c ^ 1;
+            count(slot, Math.abs(b1 - a) + Math.abs(c1 - b1) + Math.abs(d - c1) - smoothness);
+            int bm = ((b + 1) ^ 1) - 1;
+            int cm = ((c + 1) ^ 1) - 1;
+            count(slot + 2, Math.abs(bm - a) + Math.abs(cm - bm) + Math.abs(d - cm) - smoothness);
+        }
+
+        private void count(int slot, int change) {
+            if (change > 0) {
+                groups[slot]++;
+            } else if (change < 0) {
+                groups[slot + 1]++;
+            }
+        }
+
+        double rsRate() {
+            // The equation is homogeneous in the differences, so they need not be normalised
+            double d0 = groups[0] - groups[1];
+            double dn0 = groups[2] - groups[3];
+            double d1 = groups[4] - groups[5];
+            double dn1 = groups[6] - groups[7];
+            double x = smallerRoot(2 * (d1 + d0), dn0 - dn1 - d1 - 3 * d0, d0 - dn0);
+            return clampRate(x / (x - 0.5));
+        }
+
+        double spaRate() {
+            if (closePairs == 0) {
+                return Double.NaN;
+            }
+            return clampRate(smallerRoot(closePairs / 2.0, 2.0 * pairsX - pairs, pairsY - pairsX));
+        }
+
+        static Counts merge(Counts left, Counts right) {
+            for (int i = 0; i < left.histogram.length; i++) {
+                left.histogram[i] += right.histogram[i];
+            }
+            for (int i = 0; i < left.groups.length; i++) {
+                left.groups[i] += right.groups[i];
+            }
+            left.samples += right.samples;
+            left.pairs += right.pairs;
+            left.closePairs += right.closePairs;
+            left.pairsX += right.pairsX;
+            left.pairsY += right.pairsY;
+            return left;
+        }
+    }
+}
@@ -11,7 +11,13 @@ import javafx.scene.layout.*;
 import javafx.scene.text.Font;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.io.*;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -29,6 +35,7 @@ import org.apache.logging.log4j.Logger;
  *     <li>Extract embedded text from BMP images.</li>
  *     <li>Visualize least significant bit (LSB) analysis for steganography detection.</li>
  *     <li>Save and load BMP images for further processing.</li>
+ *     <li>Run image work on background threads with progress reporting and cancellation.</li>
  * </ul>
  *
  * <h3>How It Works:</h3>
@@ -68,10 +75,16 @@ public class SteganographyApp extends Application {
 
     File originalImageFile;
     File modifiedImageFile;
+    ImageSession originalSession;
+    ImageSession modifiedSession;
 
     private Stage stage;
 
     TextField textToEmbedField;
+    PasswordField passwordField;
+    ComboBox<Integer> bitsPerChannelBox;
+    ComboBox<String> channelsBox;
+    CheckBox scatterCheckBox;
     Button loadOriginalImageButton;
     Button loadModifiedImageButton;
     Button embedTextButton;
@@ -81,6 +94,13 @@ public class SteganographyApp extends Application {
 
     private Button visualAttackModifiedButton;
     private Button visualAttackOriginalButton;
+    private Button cancelTaskButton;
+
+    private ProgressBar progressBar;
+    private Label taskStatusLabel;
+    private ImageTaskRunner taskRunner;
+    private ResultCache resultCache;
+    private PayloadCipher payloadCipher;
 
     private VBox rootLayout;
     private VBox controlsLayout;
@@ -118,6 +138,16 @@ public class SteganographyApp extends Application {
         initMainUIElements();
     }
 
+    /**
+     * Stops background tasks when the application exits.
+     */
+    @Override
+    public void stop() {
+        if (taskRunner != null) {
+            taskRunner.shutdown();
+        }
+    }
+
     /**
      * Initializes the main UI components and layout. Sets up buttons, image views, and their styles.
      */
@@ -129,6 +159,20 @@ public class SteganographyApp extends Application {
         textToEmbedField.setPromptText(AppConstants.TEXT_FIELD_PROMPT);
         textToEmbedField.setFont(Font.font(AppConstants.BUTTON_FONT));
 
+        passwordField = new PasswordField();
+        passwordField.setPromptText(AppConstants.PASSWORD_FIELD_PROMPT);
+        passwordField.setFont(Font.font(AppConstants.BUTTON_FONT));
+
+        bitsPerChannelBox = new ComboBox<>();
+        for (int bits = 1; bits <= EmbeddingMode.MAX_BITS_PER_CHANNEL; bits++) {
+            bitsPerChannelBox.getItems().add(bits);
+        }
+        bitsPerChannelBox.setValue(EmbeddingMode.DEFAULT.getBitsPerChannel());
+        channelsBox = new ComboBox<>();
+        channelsBox.getItems().addAll(AppConstants.CHANNEL_CHOICES);
+        channelsBox.setValue(AppConstants.CHANNEL_CHOICES[0]);
+        scatterCheckBox = new CheckBox(AppConstants.SCATTER_CHECKBOX_TEXT);
+
         loadOriginalImageButton = new Button(AppConstants.LOAD_ORIGINAL_IMAGE_BUTTON_TEXT);
         loadModifiedImageButton = new Button(AppConstants.LOAD_MODIFIED_IMAGE_BUTTON_TEXT);
         embedTextButton = new Button(AppConstants.EMBED_TEXT_BUTTON_TEXT);
@@ -137,6 +181,14 @@ public class SteganographyApp extends Application {
         resetButton = new Button(AppConstants.RESET_BUTTON_TEXT);
         visualAttackModifiedButton = new Button(AppConstants.VISUAL_ATTACK_MODIFIED_BUTTON_TEXT);
         visualAttackOriginalButton = new Button(AppConstants.VISUAL_ATTACK_ORIGINAL_BUTTON_TEXT);
+        cancelTaskButton = new Button(AppConstants.CANCEL_TASK_BUTTON_TEXT);
+
+        progressBar = new ProgressBar(0);
+        progressBar.setMinWidth(200);
+        taskStatusLabel = new Label();
+        taskRunner = new ImageTaskRunner(AppConstants.UI_WORKER_THREADS, progressBar, taskStatusLabel);
+        resultCache = createResultCache();
+        Metrics.configure();
 
         applyStylesToButtons();
         layoutSetup();
@@ -147,6 +199,24 @@ public class SteganographyApp extends Application {
         stage.show();
     }
 
+    /**
+     * Creates the cache of statistics and visual attack results. Results are also kept on disk when
+     * the {@code steganography.cache.dir} property names a directory.
+     *
+     * @return the result cache.
+     */
+    private static ResultCache createResultCache() {
+        String directory = System.getProperty("steganography.cache.dir");
+        if (directory != null && !directory.isBlank()) {
+            try {
+                return new ResultCache(AppConstants.CACHE_MEMORY_BYTES, Path.of(directory), AppConstants.CACHE_DISK_BYTES);
+            } catch (IOException e) {
+                logger.warn("Cannot use cache directory {}; caching in memory only", directory, e);
+            }
+        }
+        return new ResultCache(AppConstants.CACHE_MEMORY_BYTES);
+    }
+
     /**
      * Sets up the layout for the application, including image displays, controls, and logo.
      */
@@ -178,7 +248,14 @@ public class SteganographyApp extends Application {
                 resetButton,
                 visualAttackModifiedButton,
                 visualAttackOriginalButton,
-                textToEmbedField
+                new HBox(10, new Label(AppConstants.BITS_PER_CHANNEL_LABEL), bitsPerChannelBox),
+                new HBox(10, new Label(AppConstants.CHANNELS_LABEL), channelsBox),
+                scatterCheckBox,
+                textToEmbedField,
+                passwordField,
+                progressBar,
+                taskStatusLabel,
+                cancelTaskButton
         );
         controlsLayout.setAlignment(Pos.CENTER);
         controlsLayout.setPadding(new Insets(20));
@@ -202,6 +279,7 @@ public class SteganographyApp extends Application {
         styleButton(resetButton);
         styleButton(visualAttackModifiedButton);
         styleButton(visualAttackOriginalButton);
+        styleButton(cancelTaskButton);
     }
 
     /**
@@ -269,34 +347,66 @@ public class SteganographyApp extends Application {
             resetApplication();
         });
         visualAttackModifiedButton.setOnAction(e -> {
-            if (modifiedImageFile != null) {
+            if (modifiedSession != null) {
                 logger.info("Performing visual attack on modified image");
-                applyVisualAttack(modifiedImageFile, modifiedImageView);
+                applyVisualAttack(modifiedSession, modifiedImageView);
             } else {
                 logger.warn("No modified image loaded for visual attack");
                 showErrorMessage("Please load the modified image first.");
             }
         });
         visualAttackOriginalButton.setOnAction(e -> {
-            if (originalImageFile != null) {
+            if (originalSession != null) {
                 logger.info("Performing visual attack on original image");
-                applyVisualAttack(originalImageFile, originalImageView);
+                applyVisualAttack(originalSession, originalImageView);
             } else {
                 logger.warn("No original image loaded for visual attack");
                 showErrorMessage("Please load the original image first.");
             }
         });
-        loadOriginalImageButton.setOnAction(e -> {
-            logger.info("Load Original BMP button clicked");
-            loadImage(stage, true);
-            updateOriginalImageStatistics(); // Обновление статистики для оригинального изображения
+        cancelTaskButton.setOnAction(e -> {
+            logger.info("Cancel button clicked");
+            taskRunner.cancelAll();
         });
-
-        loadModifiedImageButton.setOnAction(e -> {
-            logger.info("Load Modified BMP button clicked");
-            loadImage(stage, false);
-            updateModifiedImageStatistics(); // Обновление статистики для модифицированного изображения
+        bitsPerChannelBox.setOnAction(e -> {
+            updateOriginalImageStatistics();
+            updateModifiedImageStatistics();
         });
+        channelsBox.setOnAction(e -> {
+            updateOriginalImageStatistics();
+            updateModifiedImageStatistics();
+        });
+        scatterCheckBox.setOnAction(e -> {
+            updateOriginalImageStatistics();
+            updateModifiedImageStatistics();
+        });
+        // Derived keys are cached per cipher, so a cipher is only replaced when the password changes
+        passwordField.textProperty().addListener((observable, oldPassword, newPassword) -> payloadCipher = null);
+    }
+
+    /**
+     * Returns the embedding mode selected in the UI.
+     *
+     * @return the selected bits per channel, channel mask and pixel order.
+     */
+    EmbeddingMode getSelectedEmbeddingMode() {
+        return new EmbeddingMode(bitsPerChannelBox.getValue(), EmbeddingMode.parseChannels(channelsBox.getValue()),
+                scatterCheckBox.isSelected());
+    }
+
+    /**
+     * Returns the cipher for the password entered in the UI.
+     *
+     * @return the cipher, or {@code null} if no password is entered.
+     */
+    PayloadCipher getPayloadCipher() {
+        if (passwordField.getText().isEmpty()) {
+            return null;
+        }
+        if (payloadCipher == null) {
+            payloadCipher = new PayloadCipher(passwordField.getText().toCharArray());
+        }
+        return payloadCipher;
     }
 
     /**
@@ -310,23 +420,28 @@ public class SteganographyApp extends Application {
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter(AppConstants.BMP_DESCRIPTION, AppConstants.BMP_EXTENSION));
         File selectedFile = fileChooser.showOpenDialog(stage);
         if (selectedFile != null) {
-            try {
-                Image image = new Image(new FileInputStream(selectedFile), AppConstants.IMAGE_WIDTH, AppConstants.IMAGE_HEIGHT, true, true);
+            // Only the preview is decoded here, on a worker thread; full resolution is decoded on demand
+            taskRunner.replace(isOriginal ? "load:original" : "load:modified", progress -> {
+                progress.step(0, 1, "Loading " + selectedFile.getName());
+                return ImageSession.open(selectedFile, AppConstants.IMAGE_WIDTH, AppConstants.IMAGE_HEIGHT);
+            }, session -> {
                 if (isOriginal) {
+                    originalSession = session;
                     originalImageFile = selectedFile;
-                    originalImageView.setImage(image);
+                    originalImageView.setImage(session.getPreview());
                     updateOriginalImageStatistics(); // Обновление статистики
                     logger.info("Original image loaded: " + selectedFile.getAbsolutePath());
                 } else {
+                    modifiedSession = session;
                     modifiedImageFile = selectedFile;
-                    modifiedImageView.setImage(image);
+                    modifiedImageView.setImage(session.getPreview());
                     updateModifiedImageStatistics(); // Обновление статистики
                     logger.info("Modified image loaded: " + selectedFile.getAbsolutePath());
                 }
-            } catch (IOException e) {
-                logger.error(AppConstants.ERROR_LOADING_IMAGE, e);
+            }, error -> {
+                logger.error(AppConstants.ERROR_LOADING_IMAGE, error);
                 showErrorMessage(AppConstants.ERROR_LOADING_IMAGE);
-            }
+            });
         }
     }
 
@@ -343,37 +458,54 @@ public class SteganographyApp extends Application {
                 return;
             }
 
-            Image image = new Image(new FileInputStream(originalImageFile));
-            int width = (int) image.getWidth();
-            int height = (int) image.getHeight();
-
-            if (width * height < AppConstants.MIN_REQUIRED_PIXELS) {
+            // The header read when the image was loaded gives the dimensions; no need to decode the pixels
+            BmpHeader header = originalSession != null && originalSession.getFile().equals(originalImageFile)
+                    ? originalSession.getHeader()
+                    : null;
+            if (header == null) {
+                header = BmpHeader.read(originalImageFile.toPath());
+            }
+            if ((long) header.getWidth() * header.getHeight() < AppConstants.MIN_REQUIRED_PIXELS) {
                 showErrorMessage(AppConstants.IMAGE_TOO_SMALL_ERROR);
                 return;
             }
 
-            byte[] imageData = Files.readAllBytes(originalImageFile.toPath());
             byte[] textBytes = text.getBytes();
-
-            // Ensure the image is large enough to embed the text
-            int availableCapacity = imageData.length / 8; 
-            if (textBytes.length > availableCapacity) {
-                showErrorMessage("The message is too large to embed in this image. Available capacity: "
-                        + availableCapacity + " bytes, Message size: " + textBytes.length + " bytes.");
+            EmbeddingMode mode = getSelectedEmbeddingMode();
+            try {
+                mode.validateFor(header);
+            } catch (IOException e) {
+                showErrorMessage(e.getMessage());
                 return;
             }
 
-            ImageCryptoTools.embedBytesInImageBytes(imageData, textBytes);
-
-            modifiedImageFile = new File(originalImageFile.getParent(), "modified.bmp");
-            try (FileOutputStream fos = new FileOutputStream(modifiedImageFile)) {
-                fos.write(imageData);
+            // Ensure the image is large enough to embed the text, plus the salt, IV and tag if it is encrypted
+            PayloadCipher cipher = getPayloadCipher();
+            int availableCapacity = ImageCryptoTools.getCapacity(header, mode);
+            long storedSize = textBytes.length + (cipher != null ? PayloadCipher.OVERHEAD : 0L);
+            if (storedSize > availableCapacity) {
+                showErrorMessage("The message is too large to embed in this image. Available capacity: "
+                        + availableCapacity + " bytes, Message size: " + storedSize + " bytes.");
+                return;
             }
 
-            Image modifiedImage = new Image(new FileInputStream(modifiedImageFile), AppConstants.MODIFIED_IMAGE_WIDTH, AppConstants.MODIFIED_IMAGE_HEIGHT, true, true);
-            modifiedImageView.setImage(modifiedImage);
-            updateModifiedImageStatistics();
-            logger.info("Text embedded successfully and saved to modified.bmp");
+            File sourceFile = originalImageFile;
+            File targetFile = new File(originalImageFile.getParent(), "modified.bmp");
+            taskRunner.submit("embed", progress -> {
+                progress.step(0, 2, "Embedding " + textBytes.length + " bytes (" + mode + ")");
+                ImageCryptoTools.embedBytesInFile(sourceFile.toPath(), targetFile.toPath(), textBytes, mode, cipher);
+                progress.step(1, 2, "Loading modified image");
+                return ImageSession.open(targetFile, AppConstants.MODIFIED_IMAGE_WIDTH, AppConstants.MODIFIED_IMAGE_HEIGHT);
+            }, session -> {
+                modifiedSession = session;
+                modifiedImageFile = targetFile;
+                modifiedImageView.setImage(session.getPreview());
+                updateModifiedImageStatistics();
+                logger.info("Text embedded successfully ({}) and saved to modified.bmp", mode);
+            }, error -> {
+                logger.error(AppConstants.ERROR_EMBEDDING_TEXT, error);
+                showErrorMessage(AppConstants.ERROR_EMBEDDING_TEXT);
+            });
 
         } catch (IOException e) {
             logger.error(AppConstants.ERROR_EMBEDDING_TEXT, e);
@@ -392,20 +524,33 @@ public class SteganographyApp extends Application {
         }
 
         try {
-            Image image = new Image(new FileInputStream(modifiedImageFile));
-            int width = (int) image.getWidth();
-            int height = (int) image.getHeight();
-
-            if (width * height < AppConstants.MIN_REQUIRED_PIXELS) {
+            // The probe reads only the headers, so these checks cost the same for any image size
+            BmpProbe probe = BmpProbe.probe(modifiedImageFile.toPath());
+            if (!probe.meetsMinimumSize()) {
                 showErrorMessage(AppConstants.IMAGE_TOO_SMALL_ERROR);
                 return;
             }
+            PayloadCipher cipher = getPayloadCipher();
+            if (probe.hasPayload() && probe.getFrame().isEncrypted() && cipher == null) {
+                showErrorMessage(AppConstants.PASSWORD_REQUIRED_ERROR);
+                return;
+            }
 
-            byte[] imageData = Files.readAllBytes(modifiedImageFile.toPath());
-
-            String extractedText = ImageCryptoTools.getString(imageData);
-            logger.info("Text extracted successfully: " + extractedText);
-            showInfoMessage("Extracted Text", "The embedded text is:", extractedText);
+            File sourceFile = modifiedImageFile;
+            taskRunner.submit("extract", progress -> {
+                progress.step(0, 1, "Extracting from " + sourceFile.getName());
+                return extractToTemporaryFile(sourceFile.toPath(), cipher);
+            }, result -> {
+                if (result.text() != null) {
+                    logger.info("Text extracted successfully: " + result.text());
+                    showInfoMessage("Extracted Text", "The embedded text is:", result.text());
+                } else {
+                    saveExtractedPayload(result.file(), result.size());
+                }
+            }, error -> {
+                logger.error(AppConstants.ERROR_EXTRACTING_TEXT, error);
+                showErrorMessage(AppConstants.ERROR_EXTRACTING_TEXT);
+            });
         } catch (IOException e) {
             logger.error(AppConstants.ERROR_EXTRACTING_TEXT, e);
             showErrorMessage(AppConstants.ERROR_EXTRACTING_TEXT);
@@ -413,24 +558,141 @@ public class SteganographyApp extends Application {
     }
 
     /**
-     * Applies a visual attack to the specified image file and displays the result in the provided ImageView.
+     * Outcome of an extraction: either text small enough to show in a dialog, or a temporary file
+     * holding a larger or binary payload.
+     */
+    private record ExtractionResult(String text, Path file, long size) {
+    }
+
+    /**
+     * Streams the payload of an image into a temporary file, so that heap use does not depend on its size.
+     * Small payloads that are valid UTF-8 are read back as text; images without a framed payload are
+     * decoded in the legacy format.
      *
-     * @param imageFile the image file to which the visual attack will be applied.
-     * @param imageView the ImageView to display the attacked image.
+     * @param imageFile the image to extract from.
+     * @param cipher    decrypts an encrypted payload; may be {@code null}.
+     * @return the extracted text or the temporary file holding the payload.
+     * @throws IOException if the image cannot be read, the payload is corrupted or the password is wrong.
      */
-    void applyVisualAttack(File imageFile, ImageView imageView) {
+    private ExtractionResult extractToTemporaryFile(Path imageFile, PayloadCipher cipher) throws IOException {
+        Path payloadFile = Files.createTempFile("extracted-payload", ".bin");
         try {
-            Image image = new Image(new FileInputStream(imageFile));
-            if (image.getWidth() <= 0 || image.getHeight() <= 0) {
-                showErrorMessage("Image dimensions must be positive.");
-                return;
+            long size;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(payloadFile))) {
+                size = ImageCryptoTools.extractPayloadFromFile(imageFile, out, cipher);
+            }
+            if (size < 0) {
+                Files.delete(payloadFile);
+                return new ExtractionResult(ImageCryptoTools.extractStringFromFile(imageFile), null, 0);
+            }
+            if (size <= AppConstants.MAX_DISPLAYED_PAYLOAD_BYTES) {
+                String text = decodeText(Files.readAllBytes(payloadFile));
+                if (text != null) {
+                    Files.delete(payloadFile);
+                    return new ExtractionResult(text, null, size);
+                }
+            }
+            return new ExtractionResult(null, payloadFile, size);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(payloadFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Decodes a payload as UTF-8 text, rejecting binary payloads instead of replacing their bytes.
+     *
+     * @param payload the payload bytes.
+     * @return the text, or {@code null} if the payload is not valid UTF-8.
+     */
+    private static String decodeText(byte[] payload) {
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(payload))
+                    .toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Asks where to save a payload that cannot be displayed and moves the temporary file there.
+     *
+     * @param payloadFile the temporary file holding the payload; deleted if the user cancels.
+     * @param size        the payload size in bytes.
+     */
+    private void saveExtractedPayload(Path payloadFile, long size) {
+        logger.info("Extracted payload of {} bytes is too large or not text, asking where to save it", size);
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Save extracted payload (" + size + " bytes)");
+        fileChooser.setInitialFileName("extracted_payload.bin");
+        File saveFile = fileChooser.showSaveDialog(stage);
+        try {
+            if (saveFile != null) {
+                Files.move(payloadFile, saveFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                logger.info("Extracted payload saved to: " + saveFile.getAbsolutePath());
+            } else {
+                Files.deleteIfExists(payloadFile);
             }
-            imageView.setImage(ImageCryptoTools.performVisualAttack(image));
-            logger.info("Visual attack applied successfully");
         } catch (IOException e) {
-            logger.error(AppConstants.ERROR_VISUAL_ATTACK, e);
-            showErrorMessage(AppConstants.ERROR_VISUAL_ATTACK);
+            logger.error(AppConstants.ERROR_SAVING_PAYLOAD, e);
+            showErrorMessage(AppConstants.ERROR_SAVING_PAYLOAD);
+        }
+    }
+
+    /**
+     * Applies a visual attack to the specified image and displays the result in the provided ImageView.
+     * The full-resolution image is decoded once per session and shared with later operations.
+     * Images larger than {@link AppConstants#LSB_TILED_VIEW_THRESHOLD_PIXELS} are shown in a tiled
+     * {@link LsbPlaneViewer} instead, which never decodes the whole image.
+     *
+     * @param session   the loaded image to which the visual attack will be applied.
+     * @param imageView the ImageView to display the attacked image.
+     */
+    void applyVisualAttack(ImageSession session, ImageView imageView) {
+        File imageFile = session.getFile();
+        BmpHeader header = session.getHeader();
+        if (LsbTileRenderer.supports(header)
+                && (long) header.getWidth() * header.getHeight() > AppConstants.LSB_TILED_VIEW_THRESHOLD_PIXELS) {
+            openLsbPlaneViewer(imageFile);
+            return;
         }
+        // Repeated clicks while the attack is running are coalesced into the running task
+        // Repeated attacks on an unchanged file are served from the result cache
+        taskRunner.submit("visual-attack:" + imageFile.getAbsolutePath(), progress -> resultCache.get(imageFile.toPath(),
+                "lsb-planes", ImageCryptoTools.LSB_PLANES_CODEC, () -> {
+                    progress.step(0, 2, "Loading " + imageFile.getName());
+                    Image image = session.getFullImage();
+                    if (image.getWidth() <= 0 || image.getHeight() <= 0) {
+                        throw new IllegalArgumentException("Image dimensions must be positive.");
+                    }
+                    progress.step(1, 2, "Extracting LSB planes");
+                    return ImageCryptoTools.performVisualAttack(image);
+                }), attackedImage -> {
+            imageView.setImage(attackedImage);
+            logger.info("Visual attack applied successfully");
+        }, error -> {
+            logger.error(AppConstants.ERROR_VISUAL_ATTACK, error);
+            showErrorMessage(error instanceof IllegalArgumentException ? error.getMessage() : AppConstants.ERROR_VISUAL_ATTACK);
+        });
+    }
+
+    /**
+     * Opens the tiled LSB plane viewer on an image too large to attack as a whole.
+     *
+     * @param imageFile the BMP file to show.
+     */
+    private void openLsbPlaneViewer(File imageFile) {
+        taskRunner.submit("lsb-viewer:" + imageFile.getAbsolutePath(), progress -> new LsbTileRenderer(imageFile.toPath()),
+                renderer -> {
+                    new LsbPlaneViewer(renderer, AppConstants.LSB_VIEWER_TITLE + imageFile.getName()).show();
+                    logger.info("Opened tiled LSB plane viewer for {}", imageFile);
+                }, error -> {
+                    logger.error(AppConstants.ERROR_LSB_VIEWER, error);
+                    showErrorMessage(AppConstants.ERROR_LSB_VIEWER);
+                });
     }
 
     /**
@@ -465,28 +727,56 @@ public class SteganographyApp extends Application {
      * Updates the statistics label for the original image using data derived from the loaded image.
      */
     private void updateOriginalImageStatistics() {
-        if (originalImageView.getImage() != null) {
-            String stats = ImageStatistics.getImageStatistics(originalImageView.getImage());
-            originalImageStatsLabel.setText("Original Image Stats: \n" + stats);
-        }
+        updateImageStatistics("stats:original", originalSession, originalImageStatsLabel, "Original Image Stats: \n");
     }
 
     /**
      * Updates the statistics label for the modified image using data derived from the loaded image.
      */
     private void updateModifiedImageStatistics() {
-        if (modifiedImageView.getImage() != null) {
-            String stats = ImageStatistics.getImageStatistics(modifiedImageView.getImage());
-            modifiedImageStatsLabel.setText("Modified Image Stats: \n" + stats);
+        updateImageStatistics("stats:modified", modifiedSession, modifiedImageStatsLabel, "Modified Image Stats: \n");
+    }
+
+    /**
+     * Computes statistics for a loaded image on a worker thread and shows them in a label.
+     * A newer request for the same view supersedes one that is still running, and statistics already
+     * computed for the same file content, preview size and mode come from the result cache.
+     * <p>
+     * The statistics describe the session's preview, never whatever the view currently shows: after a
+     * visual attack the view holds the LSB planes, which would otherwise be cached under the file's key.
+     * The available bits are those of the loaded file, not of the preview.
+     * </p>
+     *
+     * @param key     the task key for the view.
+     * @param session the loaded image.
+     * @param label   the label receiving the statistics.
+     * @param prefix  the text shown before the statistics.
+     */
+    private void updateImageStatistics(String key, ImageSession session, Label label, String prefix) {
+        if (session == null || session.getPreview() == null) {
+            return;
         }
+        Image image = session.getPreview();
+        File imageFile = session.getFile();
+        BmpHeader header = session.getHeader();
+        EmbeddingMode mode = getSelectedEmbeddingMode();
+        // The preview is a scaled copy of the file, so its size is part of the cache key
+        String kind = "statistics:" + (int) image.getWidth() + "x" + (int) image.getHeight() + ":" + mode;
+        taskRunner.replace(key, progress -> resultCache.get(imageFile.toPath(), kind, ResultCache.TEXT, () -> {
+            progress.step(0, 1, "Computing image statistics");
+            return ImageStatistics.getImageStatistics(image, header, mode);
+        }), stats -> label.setText(prefix + stats), error -> logger.error("Failed to compute image statistics", error));
     }
 
     /**
      * Resets the application to its initial state. Clears loaded images, statistics, and related variables.
      */
     void resetApplication() {
+        taskRunner.cancelAll();
         originalImageFile = null;
         modifiedImageFile = null;
+        originalSession = null;
+        modifiedSession = null;
 
         originalImageView.setImage(null);
         modifiedImageView.setImage(null);
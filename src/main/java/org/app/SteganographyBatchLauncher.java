@@ -0,0 +1,80 @@
+package org.app;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Headless entry point for processing whole directory trees of BMP files.
+ * <p>
+ * Unlike {@link SteganographyAppLauncher}, this launcher never starts the JavaFX toolkit,
+ * so it can run on batch hosts without a display. Results are streamed as JSON lines to the
+ * report file (or standard output), and the process exits with a non-zero status if any file failed.
+ * Console logging goes to standard error, so a report on standard output stays pure JSON lines.
+ * </p>
+ *
+ * <pre>
+ * java -cp SteganographyApplication.jar org.app.SteganographyBatchLauncher embed --input in --output out --text "secret"
+ * java -cp SteganographyApplication.jar org.app.SteganographyBatchLauncher extract --input out --report report.jsonl
+ * </pre>
+ *
+ * @see BatchProcessor
+ */
+public class SteganographyBatchLauncher {
+
+    static {
+        // Must run before the first logger is created, as log4j binds the console appender once
+        System.setProperty("steganography.log.console", "SYSTEM_ERR");
+    }
+
+    private static final Logger logger = LogManager.getLogger(SteganographyBatchLauncher.class);
+
+    /**
+     * Parses the command line and runs the batch.
+     *
+     * @param args command-line arguments, see {@link AppConstants#BATCH_USAGE}.
+     */
+    public static void main(String[] args) {
+        BatchOptions options;
+        try {
+            options = BatchOptions.parse(args);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.err.println(AppConstants.BATCH_USAGE);
+            System.exit(2);
+            return;
+        }
+
+        if (options.isVirtualThreads()) {
+            logger.info("Starting batch {} over {} on virtual threads, at most {} files at once",
+                    options.getMode(), options.getInputDirectory(), options.getMaxOpenFiles());
+        } else {
+            logger.info("Starting batch {} over {} with {} threads",
+                    options.getMode(), options.getInputDirectory(), options.getThreads());
+        }
+        Metrics.configure();
+        long start = System.nanoTime();
+
+        int failed;
+        try (BatchReportWriter report = new BatchReportWriter(options.getReportFile())) {
+            new BatchProcessor(options).run(report);
+            failed = report.getFailed();
+            logger.info("Batch finished in {} ms: {} succeeded, {} failed",
+                    (System.nanoTime() - start) / 1_000_000, report.getSucceeded(), failed);
+            if (Metrics.getRegistry() instanceof StageMetrics stageMetrics) {
+                logger.info("Time per stage:{}{}", System.lineSeparator(), stageMetrics);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("Batch aborted", e);
+            failed = 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Batch interrupted", e);
+            failed = 1;
+        }
+
+        System.exit(failed == 0 ? 0 : 1);
+    }
+}
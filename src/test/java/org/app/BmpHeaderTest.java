@@ -0,0 +1,59 @@
+package org.app;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BmpHeaderTest {
+
+    @Test
+    void separatesPixelBytesFromRowPadding() throws IOException {
+        BmpHeader header = BmpHeader.parse(TestImages.bmp24(101, 67, 1));
+
+        assertEquals(101, header.getWidth());
+        assertEquals(67, header.getHeight());
+        assertEquals(303, header.getPixelBytesPerRow());
+        assertEquals(304, header.getRowStride());
+        assertEquals(303L * 67, header.getCarrierByteCount());
+        assertEquals(304L * 67, header.getPixelDataLength());
+    }
+
+    @Test
+    void rejectsRowsTooLargeToAddress(@TempDir Path dir) throws IOException {
+        // 2^30 pixels of 32 bits: the row stride, 2^32 bytes, used to wrap to 0
+        byte[] file = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN)
+                .put((byte) 'B').put((byte) 'M')
+                .putInt(64)
+                .putInt(0)
+                .putInt(54)
+                .putInt(40)
+                .putInt(0x40000000)
+                .putInt(1)
+                .putShort((short) 1)
+                .putShort((short) 32)
+                .putInt(BmpHeader.BI_RGB)
+                .array();
+
+        IOException e = assertThrows(IOException.class, () -> BmpHeader.parse(file));
+        assertTrue(e.getMessage().startsWith("BMP rows are too large"), e.getMessage());
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> assertThrows(IOException.class, () -> ImageCryptoTools.extractPayload(file)));
+
+        Path path = dir.resolve("huge-rows.bmp");
+        Files.write(path, file);
+        assertThrows(IOException.class, () -> BmpProbe.probe(path));
+        assertThrows(IOException.class, () -> ImageCryptoTools.extractPayloadFromFile(path));
+    }
+}
@@ -0,0 +1,113 @@
+package org.app;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LsbKernelsTest {
+
+    private static final int[] BITS = {1, 2, 4};
+
+    @Test
+    void spreadAndGatherMatchTheScalarLoop() {
+        for (int value = 0; value < 256; value++) {
+            long word = LsbKernels.spread(value);
+            for (int bit = 0; bit < 8; bit++) {
+                assertEquals(value >> bit & 1, (int) (word >>> (8 * bit)) & 0xFF, "value " + value + ", bit " + bit);
+            }
+            assertEquals(value, LsbKernels.gather(word | 0xFEFEFEFEFEFEFEFEL));
+
+            int word2 = LsbKernels.spread2(value);
+            for (int group = 0; group < 4; group++) {
+                assertEquals(value >> (2 * group) & 3, word2 >>> (8 * group) & 0xFF, "value " + value + ", group " + group);
+            }
+            assertEquals(value, LsbKernels.gather2(word2 | 0xFCFCFCFC));
+        }
+    }
+
+    @Test
+    void embedBlockMatchesTheScalarLoop() {
+        Random random = new Random(7);
+        for (int bits : BITS) {
+            for (ByteOrder order : new ByteOrder[]{ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+                byte[] payload = new byte[37];
+                random.nextBytes(payload);
+                byte[] carrier = new byte[3 + payload.length * 8 / bits + 5];
+                random.nextBytes(carrier);
+
+                byte[] expected = carrier.clone();
+                embedScalar(expected, 3, payload, bits);
+                LsbKernels.embedBlock(ByteBuffer.wrap(carrier).order(order), 3, payload, 0, payload.length, bits);
+
+                assertArrayEquals(expected, carrier, bits + " bits, " + order);
+            }
+        }
+    }
+
+    @Test
+    void extractBlockMatchesTheScalarLoop() {
+        Random random = new Random(11);
+        for (int bits : BITS) {
+            for (ByteOrder order : new ByteOrder[]{ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+                byte[] carrier = new byte[1 + 40 * 8 / bits];
+                random.nextBytes(carrier);
+
+                byte[] expected = extractScalar(carrier, 1, 40, bits);
+                byte[] actual = new byte[42];
+                LsbKernels.extractBlock(ByteBuffer.wrap(carrier).order(order), 1, actual, 2, 40, bits);
+
+                assertArrayEquals(expected, Arrays.copyOfRange(actual, 2, 42), bits + " bits, " + order);
+            }
+        }
+    }
+
+    @Test
+    void extractReadsBackWhatEmbedWrote() {
+        Random random = new Random(13);
+        for (int bits : BITS) {
+            byte[] payload = new byte[256];
+            for (int i = 0; i < payload.length; i++) {
+                payload[i] = (byte) i;
+            }
+            ByteBuffer carrier = ByteBuffer.allocate(payload.length * 8 / bits).order(ByteOrder.LITTLE_ENDIAN);
+            random.nextBytes(carrier.array());
+
+            LsbKernels.embedBlock(carrier, 0, payload, 0, payload.length, bits);
+            byte[] extracted = new byte[payload.length];
+            LsbKernels.extractBlock(carrier, 0, extracted, 0, extracted.length, bits);
+
+            assertArrayEquals(payload, extracted, bits + " bits");
+        }
+    }
+
+    /**
+     * Reference loop: payload bits in order, low bits first, {@code bits} of them per carrier byte.
+     */
+    private static void embedScalar(byte[] carrier, int index, byte[] payload, int bits) {
+        int mask = (1 << bits) - 1;
+        for (byte value : payload) {
+            for (int shift = 0; shift < 8; shift += bits, index++) {
+                carrier[index] = (byte) (carrier[index] & ~mask | (value >> shift & mask));
+            }
+        }
+    }
+
+    private static byte[] extractScalar(byte[] carrier, int index, int count, int bits) {
+        int mask = (1 << bits) - 1;
+        byte[] payload = new byte[count];
+        for (int k = 0; k < count; k++) {
+            int value = 0;
+            for (int shift = 0; shift < 8; shift += bits, index++) {
+                value |= (carrier[index] & mask) << shift;
+            }
+            payload[k] = (byte) value;
+        }
+        return payload;
+    }
+}
@@ -0,0 +1,123 @@
+package org.app;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PayloadCipherTest {
+
+    private static final char[] PASSWORD = "correct horse battery staple".toCharArray();
+
+    @Test
+    void decryptsInPieces() throws IOException {
+        byte[] payload = new byte[1000];
+        new Random(1).nextBytes(payload);
+        PayloadCipher cipher = new PayloadCipher(PASSWORD);
+        byte[] encrypted = cipher.encrypt(payload);
+        assertEquals(payload.length + PayloadCipher.OVERHEAD, encrypted.length);
+
+        // Uneven pieces, the first one shorter than the salt and IV prefix
+        assertArrayEquals(payload, decrypt(new PayloadCipher(PASSWORD), encrypted, 7));
+    }
+
+    @Test
+    void rejectsAWrongPassword() throws IOException {
+        byte[] encrypted = new PayloadCipher(PASSWORD).encrypt(new byte[100]);
+
+        IOException e = assertThrows(IOException.class,
+                () -> decrypt(new PayloadCipher("wrong".toCharArray()), encrypted, 64));
+        assertEquals("Wrong password or corrupted payload", e.getMessage());
+    }
+
+    @Test
+    void rejectsATamperedCiphertext() throws IOException {
+        PayloadCipher cipher = new PayloadCipher(PASSWORD);
+        byte[] encrypted = cipher.encrypt(new byte[100]);
+        encrypted[PayloadCipher.SALT_SIZE + PayloadCipher.IV_SIZE + 10] ^= 1;
+
+        IOException e = assertThrows(IOException.class, () -> decrypt(cipher, encrypted, 64));
+        assertEquals("Wrong password or corrupted payload", e.getMessage());
+    }
+
+    @Test
+    void rejectsATruncatedCiphertext() {
+        PayloadCipher.Decryption decryption = new PayloadCipher(PASSWORD).newDecryption();
+
+        IOException e = assertThrows(IOException.class, decryption::finish);
+        assertEquals("Encrypted payload is truncated", e.getMessage());
+    }
+
+    @Test
+    void rejectsAnEmptyPassword() {
+        assertThrows(IllegalArgumentException.class, () -> new PayloadCipher(new char[0]));
+    }
+
+    @Test
+    void extractsAnEncryptedPayloadOnlyWithTheRightPassword() throws IOException {
+        byte[] payload = "Meet me at the usual place at noon. ".repeat(50).getBytes(StandardCharsets.UTF_8);
+        byte[] image = TestImages.bmp24(64, 64, 2);
+        ImageCryptoTools.embedBytesInImageBytes(image, payload, EmbeddingMode.DEFAULT, new PayloadCipher(PASSWORD));
+
+        assertArrayEquals(payload, ImageCryptoTools.extractPayload(image, new PayloadCipher(PASSWORD)));
+
+        IOException wrong = assertThrows(IOException.class,
+                () -> ImageCryptoTools.extractPayload(image, new PayloadCipher("wrong".toCharArray())));
+        assertEquals("Wrong password or corrupted payload", wrong.getMessage());
+
+        IOException missing = assertThrows(IOException.class, () -> ImageCryptoTools.extractPayload(image));
+        assertEquals("Payload is encrypted: a password is required", missing.getMessage());
+    }
+
+    @Test
+    void streamsAnEncryptedPayload() throws IOException {
+        byte[] payload = new byte[150_000];
+        new Random(3).nextBytes(payload);
+        byte[] carrier = TestImages.bmp24(800, 600, 4);
+        ByteArrayOutputStream embedded = new ByteArrayOutputStream();
+        assertEquals(payload.length, ImageStreamTools.embed(new ByteArrayInputStream(carrier),
+                new ByteArrayInputStream(payload), embedded, EmbeddingMode.DEFAULT, new PayloadCipher(PASSWORD)));
+        byte[] image = embedded.toByteArray();
+
+        ByteArrayOutputStream extracted = new ByteArrayOutputStream();
+        assertEquals(payload.length, ImageStreamTools.extract(new ByteArrayInputStream(image), extracted,
+                new PayloadCipher(PASSWORD)));
+        assertArrayEquals(payload, extracted.toByteArray());
+        assertArrayEquals(payload, ImageCryptoTools.extractPayload(image, new PayloadCipher(PASSWORD)));
+
+        IOException wrong = assertThrows(IOException.class, () -> ImageStreamTools.extract(
+                new ByteArrayInputStream(image), new ByteArrayOutputStream(), new PayloadCipher("wrong".toCharArray())));
+        assertEquals("Wrong password or corrupted payload", wrong.getMessage());
+
+        IOException missing = assertThrows(IOException.class,
+                () -> ImageStreamTools.extract(new ByteArrayInputStream(image), new ByteArrayOutputStream()));
+        assertEquals("Payload is encrypted: a password is required", missing.getMessage());
+    }
+
+    @Test
+    void streamsAnEmptyEncryptedPayload() throws IOException {
+        ByteArrayOutputStream embedded = new ByteArrayOutputStream();
+        ImageStreamTools.embed(new ByteArrayInputStream(TestImages.bmp24(64, 64, 5)),
+                new ByteArrayInputStream(new byte[0]), embedded, EmbeddingMode.DEFAULT, new PayloadCipher(PASSWORD));
+
+        assertArrayEquals(new byte[0],
+                ImageCryptoTools.extractPayload(embedded.toByteArray(), new PayloadCipher(PASSWORD)));
+    }
+
+    private static byte[] decrypt(PayloadCipher cipher, byte[] encrypted, int pieceSize) throws IOException {
+        PayloadCipher.Decryption decryption = cipher.newDecryption();
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        for (int offset = 0; offset < encrypted.length; offset += pieceSize) {
+            plain.writeBytes(decryption.update(encrypted, offset, Math.min(pieceSize, encrypted.length - offset)));
+        }
+        plain.writeBytes(decryption.finish());
+        return plain.toByteArray();
+    }
+}
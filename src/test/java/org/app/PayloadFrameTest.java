@@ -0,0 +1,153 @@
+package org.app;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PayloadFrameTest {
+
+    private static final EmbeddingMode[] MODES = {
+            EmbeddingMode.DEFAULT,
+            new EmbeddingMode(2, EmbeddingMode.ALL_CHANNELS),
+            new EmbeddingMode(4, EmbeddingMode.CHANNEL_RED | EmbeddingMode.CHANNEL_GREEN),
+    };
+
+    @Test
+    void roundTripsAnIncompressiblePayload() throws IOException {
+        byte[] payload = new byte[2000];
+        new Random(1).nextBytes(payload);
+        for (EmbeddingMode mode : MODES) {
+            byte[] image = TestImages.bmp24(101, 67, 2);
+            ImageCryptoTools.embedBytesInImageBytes(image, payload, mode);
+
+            PayloadFrame frame = readFrame(image);
+            assertFalse(frame.isCompressed());
+            assertFalse(frame.isChunked());
+            assertEquals(payload.length, frame.getLength());
+            assertArrayEquals(payload, ImageCryptoTools.extractPayload(image));
+        }
+    }
+
+    @Test
+    void roundTripsACompressedPayload() throws IOException {
+        byte[] payload = "All work and no play makes Jack a dull boy. ".repeat(200).getBytes(StandardCharsets.UTF_8);
+        for (EmbeddingMode mode : MODES) {
+            byte[] image = TestImages.bmp24(64, 64, 3);
+            ImageCryptoTools.embedBytesInImageBytes(image, payload, mode);
+
+            PayloadFrame frame = readFrame(image);
+            assertTrue(frame.isCompressed());
+            assertTrue(frame.getLength() < payload.length);
+            assertEquals(payload.length, frame.getPayloadSize());
+            assertArrayEquals(payload, ImageCryptoTools.extractPayload(image));
+        }
+    }
+
+    @Test
+    void roundTripsAChunkedPayload() throws IOException {
+        byte[] payload = new byte[40_000];
+        new Random(4).nextBytes(payload);
+        for (EmbeddingMode mode : MODES) {
+            byte[] carrier = TestImages.bmp24(513, 512, 5);
+            ByteArrayOutputStream embedded = new ByteArrayOutputStream();
+            assertEquals(payload.length, ImageStreamTools.embed(new ByteArrayInputStream(carrier),
+                    new ByteArrayInputStream(payload), embedded, mode));
+
+            byte[] image = embedded.toByteArray();
+            assertEquals(carrier.length, image.length);
+            assertTrue(readFrame(image).isChunked());
+
+            ByteArrayOutputStream extracted = new ByteArrayOutputStream();
+            assertEquals(payload.length, ImageStreamTools.extract(new ByteArrayInputStream(image), extracted));
+            assertArrayEquals(payload, extracted.toByteArray());
+            assertArrayEquals(payload, ImageCryptoTools.extractPayload(image));
+        }
+    }
+
+    @Test
+    void returnsNullWithoutAFrame() throws IOException {
+        assertNull(ImageCryptoTools.extractPayload(TestImages.bmp24(64, 64, 6)));
+    }
+
+    @Test
+    void rejectsAFlippedPayloadBit() throws IOException {
+        byte[] payload = new byte[500];
+        new Random(7).nextBytes(payload);
+        byte[] image = TestImages.bmp24(64, 64, 8);
+        ImageCryptoTools.embedBytesInImageBytes(image, payload, EmbeddingMode.DEFAULT);
+
+        // With one bit per byte and no row padding, body bit i sits in pixel byte HEADER_SIZE * 8 + i
+        image[pixelOffset(image) + PayloadFrame.HEADER_SIZE * 8 + 123] ^= 1;
+
+        IOException e = assertThrows(IOException.class, () -> ImageCryptoTools.extractPayload(image));
+        assertEquals("Payload checksum mismatch", e.getMessage());
+    }
+
+    @Test
+    void rejectsACompressedPayloadLargerThanAnnounced() throws IOException {
+        byte[] payload = new byte[10_000];
+        byte[] compressed = PayloadFrame.deflate(payload);
+        assertNotNull(compressed);
+
+        byte[] image = TestImages.bmp24(64, 64, 9);
+        byte[] header = PayloadFrame.header(compressed, 100, PayloadFrame.FLAG_COMPRESSED, EmbeddingMode.DEFAULT);
+        ImageCryptoTools.processRows(pixelRows(image), BmpHeader.parse(image), new LsbCodec.Encoder(header, compressed));
+
+        IOException e = assertThrows(IOException.class, () -> ImageCryptoTools.extractPayload(image));
+        assertTrue(e.getMessage().startsWith("Compressed payload inflates past the 100 bytes"), e.getMessage());
+    }
+
+    @Test
+    void rejectsACompressedPayloadSmallerThanAnnounced() throws IOException {
+        byte[] payload = new byte[10_000];
+        byte[] compressed = PayloadFrame.deflate(payload);
+        assertNotNull(compressed);
+
+        byte[] image = TestImages.bmp24(64, 64, 10);
+        byte[] header = PayloadFrame.header(compressed, payload.length + 1, PayloadFrame.FLAG_COMPRESSED,
+                EmbeddingMode.DEFAULT);
+        ImageCryptoTools.processRows(pixelRows(image), BmpHeader.parse(image), new LsbCodec.Encoder(header, compressed));
+
+        IOException e = assertThrows(IOException.class, () -> ImageCryptoTools.extractPayload(image));
+        assertEquals("Compressed payload is truncated", e.getMessage());
+    }
+
+    @Test
+    void rejectsChunkLengthsOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> PayloadFrame.chunkLength(0));
+        assertThrows(IllegalArgumentException.class, () -> PayloadFrame.chunkLength(PayloadFrame.MAX_CHUNK_SIZE + 1));
+    }
+
+    /**
+     * Reads the frame header, which is always embedded one bit per byte from the first pixel byte.
+     */
+    private static PayloadFrame readFrame(byte[] image) throws IOException {
+        byte[] header = new byte[PayloadFrame.HEADER_SIZE];
+        LsbKernels.extractBlock(pixelRows(image), 0, header, 0, header.length, 1);
+        return PayloadFrame.parse(header);
+    }
+
+    private static ByteBuffer pixelRows(byte[] image) {
+        int offset = pixelOffset(image);
+        return ByteBuffer.wrap(image, offset, image.length - offset).slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int pixelOffset(byte[] image) {
+        return ByteBuffer.wrap(Arrays.copyOfRange(image, 10, 14)).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    }
+}
@@ -0,0 +1,61 @@
+package org.app;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PixelPermutationTest {
+
+    private static final long[] SIZES = {1, 2, 3, 5, 7, 10, 17, 100, 255, 257, 1000, 4097, 65_537};
+    private static final long[] KEYS = {0, 1, -1, 0x5DEECE66DL, Long.MIN_VALUE};
+
+    @Test
+    void mapsEveryDomainOntoItself() {
+        for (long size : SIZES) {
+            for (long key : KEYS) {
+                PixelPermutation permutation = new PixelPermutation(size, key);
+                BitSet seen = new BitSet((int) size);
+                for (long index = 0; index < size; index++) {
+                    long mapped = permutation.map(index);
+                    assertTrue(mapped >= 0 && mapped < size, "size " + size + ", key " + key + ": " + mapped);
+                    assertFalse(seen.get((int) mapped), "size " + size + ", key " + key + ": " + mapped + " hit twice");
+                    seen.set((int) mapped);
+                }
+                assertEquals(size, seen.cardinality(), "size " + size + ", key " + key);
+            }
+        }
+    }
+
+    @Test
+    void equalKeysGiveEqualPermutations() {
+        PixelPermutation first = new PixelPermutation(1000, 42);
+        PixelPermutation second = new PixelPermutation(1000, 42);
+        for (long index = 0; index < 1000; index++) {
+            assertEquals(first.map(index), second.map(index));
+        }
+    }
+
+    @Test
+    void differentKeysGiveDifferentPermutations() {
+        PixelPermutation first = new PixelPermutation(1000, 42);
+        PixelPermutation second = new PixelPermutation(1000, 43);
+        int moved = 0;
+        for (long index = 0; index < 1000; index++) {
+            if (first.map(index) != second.map(index)) {
+                moved++;
+            }
+        }
+        assertNotEquals(0, moved);
+    }
+
+    @Test
+    void rejectsEmptyDomain() {
+        assertThrows(IllegalArgumentException.class, () -> new PixelPermutation(0, 1));
+    }
+}
@@ -0,0 +1,49 @@
+package org.app;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * In-memory BMP carriers for tests.
+ */
+final class TestImages {
+
+    private static final int DIB_HEADER_SIZE = 40;
+
+    private TestImages() {
+    }
+
+    /**
+     * Creates a bottom-up 24-bit BMP with random pixels. Odd widths give rows with padding.
+     *
+     * @param width  the width in pixels.
+     * @param height the height in pixels.
+     * @param seed   the seed for the pixel data.
+     * @return the complete BMP file.
+     */
+    static byte[] bmp24(int width, int height, long seed) {
+        int stride = (width * 3 + 3) & ~3;
+        int pixelOffset = BmpHeader.FILE_HEADER_SIZE + DIB_HEADER_SIZE;
+        ByteBuffer file = ByteBuffer.allocate(pixelOffset + stride * height).order(ByteOrder.LITTLE_ENDIAN);
+        file.put((byte) 'B').put((byte) 'M')
+                .putInt(file.capacity())
+                .putInt(0)
+                .putInt(pixelOffset)
+                .putInt(DIB_HEADER_SIZE)
+                .putInt(width)
+                .putInt(height)
+                .putShort((short) 1)
+                .putShort((short) 24)
+                .putInt(BmpHeader.BI_RGB)
+                .putInt(stride * height)
+                .putInt(2835)
+                .putInt(2835)
+                .putInt(0)
+                .putInt(0);
+        byte[] pixels = new byte[stride * height];
+        new Random(seed).nextBytes(pixels);
+        file.put(pixels);
+        return file.array();
+    }
+}